@@ -5,17 +5,9 @@ package planner;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Scanner;
 
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -23,6 +15,8 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.stage.Stage;
+import planner.util.MapSqlDownloader;
+import planner.util.WorldDiff;
 
 
 public class App extends Application {
@@ -76,181 +70,48 @@ public class App extends Application {
             userHome += "/";
         }
         DB = "jdbc:sqlite:" + userHome + "planner.db";
+        Database.createTables();
+    }
 
-        try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            conn.prepareStatement("create table if not exists artefacts\n" +
-                    "(\n" +
-                    "    coordId int not null\n" +
-                    "        constraint artefacts_pk\n" +
-                    "            primary key,\n" +
-                    "    small_arte int default 0,\n" +
-                    "    large_arte int default 0,\n" +
-                    "    unique_arte int default 0\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists attacker_info\n" +
-                    "(\n" +
-                    "    coordId int not null\n" +
-                    "        constraint attacker_info_pk\n" +
-                    "            primary key,\n" +
-                    "    tsLvl int default 0 not null,\n" +
-                    "    arteSpeed double default 1.0 not null,\n" +
-                    "    heroBoots int default 0 not null,\n" +
-                    "    unitSpeed int default 3 not null\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists attacks\n" +
-                    "(\n" +
-                    "    a_coordId int not null,\n" +
-                    "    t_coordId int not null,\n" +
-                    "    landing_time String not null,\n" +
-                    "    waves int not null,\n" +
-                    "    realTgt int not null,\n" +
-                    "    conq int not null,\n" +
-                    "    time_shift int not null,\n" +
-                    "    unit_speed int not null,\n" +
-                    "    server_speed int not null,\n" +
-                    "    server_size int not null,\n" +
-                    "    withHero int not null," +
-                    "    ts int not null\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists operation_meta\n" +
-                    "(\n" +
-                    "    flex_seconds int,\n" +
-                    "    defaultLandingTime String\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists participants\n" +
-                    "(\n" +
-                    "    id integer\n" +
-                    "        constraint participants_pk\n" +
-                    "            primary key autoincrement,\n" +
-                    "    account String,\n" +
-                    "    xCoord int not null,\n" +
-                    "    yCoord int not null,\n" +
-                    "    ts int not null,\n" +
-                    "    speed double not null,\n" +
-                    "    tribe int not null,\n" +
-                    "    offstring String not null,\n" +
-                    "    offsize int not null,\n" +
-                    "    catas int not null,\n" +
-                    "    chiefs int not null,\n" +
-                    "    sendmin String,\n" +
-                    "    sendmax String,\n" +
-                    "    comment String\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists target_info\n" +
-                    "(\n" +
-                    "    coordId int not null\n" +
-                    "        constraint target_info_pk\n" +
-                    "            primary key,\n" +
-                    "    randomShiftSeconds long not null\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists templates\n" +
-                    "(\n" +
-                    "    template1 String,\n" +
-                    "    template2 String\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists updated\n" +
-                    "(\n" +
-                    "    last String not null\n" +
-                    "        constraint updated_pk\n" +
-                    "            primary key\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists village_data\n" +
-                    "(\n" +
-                    "    coordId int not null\n" +
-                    "        constraint village_data_pk\n" +
-                    "            primary key,\n" +
-                    "    capital int default 0 not null,\n" +
-                    "    offvillage int default 0 not null,\n" +
-                    "    deffvillage int default 0 not null,\n" +
-                    "    wwvillage int default 0\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists world_meta\n" +
-                    "(\n" +
-                    "    serversize INTEGER default 200,\n" +
-                    "    serverspeed INTEGER default 1,\n" +
-                    "    serverurl TEXT\n" +
-                    ")").execute();
-            conn.prepareStatement("create table if not exists x_world\n" +
-                    "(\n" +
-                    "    coordId int not null\n" +
-                    "        constraint x_world_pk\n" +
-                    "            primary key,\n" +
-                    "    xCoord int not null,\n" +
-                    "    yCoord int not null,\n" +
-                    "    tribe int not null,\n" +
-                    "    villageId int not null,\n" +
-                    "    villageName String not null,\n" +
-                    "    playerId int not null,\n" +
-                    "    playerName String not null,\n" +
-                    "    allyId int not null,\n" +
-                    "    allyName String not null,\n" +
-                    "    population int not null,\n" +
-                    "    unused1 String,\n" +
-                    "    capital String not null,\n" +
-                    "    unused2 String,\n" +
-                    "    unused3 String,\n" +
-                    "    unused4 String\n" +
-                    ")").execute();
-            conn.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+
+    @Override
+    public void stop() {
+        Database.close();
     }
 
 
-    public static String downloadMapSql() {
+    /**
+     * Downloads map.sql from the server of this operation and updates x_world.
+     * @return changes to x_world or null if there was a problem
+     */
+    public static WorldDiff downloadMapSql() {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM world_meta");
             if (rs != null && !rs.isClosed()) {
                 System.out.println("Updating map.sql");
                 // Get newest map.sql from server
                 String url = rs.getString("serverurl");
                 if (!url.endsWith("/")) url += "/";
-                HttpRequest req = HttpRequest.newBuilder()
-                        .uri(URI.create("https://" + url + "map.sql"))
-                        .header("Accept", "application/octet-stream")
-                        .build();
-                HttpResponse<String> res = HttpClient.newHttpClient()
-                        .send(req, HttpResponse.BodyHandlers.ofString());
-                // Read response and update x_world
-                Scanner sqlLines = new Scanner(res.body());
-                if (sqlLines.hasNext()) conn.prepareStatement("DELETE FROM x_world").execute();
-                while (sqlLines.hasNext()) {
-                    String line = sqlLines.nextLine();
-                    if (line.endsWith(";")) {
-                        conn.prepareStatement(line).execute();
-                    }
-                }
-                sqlLines.close();
-                // Update last updated field
-                conn.prepareStatement("DELETE FROM updated").execute();
-                String updateInfo = LocalDateTime.now().format(App.FULL_DATE_TIME);
-                PreparedStatement updated = conn.prepareStatement("INSERT INTO updated VALUES (?)");
-                updated.setString(1, updateInfo);
-                updated.execute();
-                conn.close();
-                return updateInfo;
+                WorldDiff diff = MapSqlDownloader.download(URI.create("https://" + url + "map.sql"));
+                System.out.println("Imported " + diff.getRows() + " villages from map.sql: " + diff);
+                return diff;
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return "[error]";
+        return null;
     }
 
 
     public static String getServerBaseUrl() {
         String url = "localhost";
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM world_meta");
             if (rs != null && !rs.isClosed()) {
                 url = rs.getString("serverurl");
                 if (!url.endsWith("/")) url += "/";
                 url = "https://" + url;
             }
-            conn.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -265,12 +126,10 @@ public class App extends Application {
     public static int getServerSize() {
         int serverSize = 200;
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM world_meta");
             if (rs != null && !rs.isClosed()) {
                 serverSize = rs.getInt("serversize");
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -312,6 +171,15 @@ public class App extends Application {
                 planSceneController.updateCycle();
             }
         });
+        mainController.getWorldDiff().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null) {
+                mainController.getWorldDiff().set(null);
+                if (planSceneController.getOperation() != null) {
+                    planSceneController.getOperation().applyWorldDiff(newValue);
+                    planSceneController.updateCycle();
+                }
+            }
+        });
         mainController.getAttackersAdded().addListener((observable, oldValue, newValue) -> {
             if (observable.getValue()) {
                 mainController.getAttackersAdded().set(false);
@@ -1,8 +1,6 @@
 package planner;
 
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -94,13 +92,11 @@ public class CommandController implements Initializable {
         sheet.setOnAction((ActionEvent e) -> this.updateCommands());
         igm.setOnAction((ActionEvent e) -> this.updateCommands());
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM templates").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM templates");
             while (rs.next()) {
                 template1.setText(rs.getString("template1"));
                 template2.setText(rs.getString("template2"));
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -250,7 +246,7 @@ public class CommandController implements Initializable {
         List<Attack> targets = a.getPlannedAttacks();
         if (targets.isEmpty()) return attackerRow;
         attackerRow.setSpacing(8);
-        targets.sort(Comparator.comparing(Attack::getSendingTime));
+        targets.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
 
         VBox attackerDetails = new VBox();
         Label name = new Label(a.getPlayerName());
@@ -316,10 +312,10 @@ public class CommandController implements Initializable {
                 }
             }
             targetAttacks.sort((attack1, attack2) -> {
-                if (attack1.getLandingTime().equals(attack2.getLandingTime())) {
-                    return attack1.getSendingTime().compareTo(attack2.getSendingTime());
+                if (attack1.getLandingEpochSecond() == attack2.getLandingEpochSecond()) {
+                    return Long.compare(attack1.getSendingEpochSecond(), attack2.getSendingEpochSecond());
                 } else {
-                    return attack1.getLandingTime().compareTo(attack2.getLandingTime());
+                    return Long.compare(attack1.getLandingEpochSecond(), attack2.getLandingEpochSecond());
                 }
             });
             if (targetAttacks.size() > 0) {
@@ -361,7 +357,7 @@ public class CommandController implements Initializable {
         List<Attack> targets = a.getPlannedAttacks();
         if (targets.isEmpty()) return attackerRow;
         attackerRow.setSpacing(8);
-        targets.sort(Comparator.comparing(Attack::getSendingTime));
+        targets.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
 
         VBox attackerDetails = new VBox();
         Label name = new Label(a.getPlayerName());
@@ -395,7 +391,7 @@ public class CommandController implements Initializable {
         if (attacksPerPlayer.get(a.getPlayerId()).size() > targets.size()) {
             // More than one sweep by this player
             List<Attack> attacksForPlayer = attacksPerPlayer.get(a.getPlayerId());
-            attacksForPlayer.sort(Comparator.comparing(Attack::getSendingTime));
+            attacksForPlayer.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
             for (Attack attack : attacksForPlayer) {
                 commandText.append(attack.isReal() ? "[b]" : "")
                         .append(attack.getSendingTime().format(App.TIME_ONLY))
@@ -522,10 +518,10 @@ public class CommandController implements Initializable {
             }
         }
         targetAttacks.sort((attack1, attack2) -> {
-            if (attack1.getLandingTime().equals(attack2.getLandingTime())) {
-                return attack1.getSendingTime().compareTo(attack2.getSendingTime());
+            if (attack1.getLandingEpochSecond() == attack2.getLandingEpochSecond()) {
+                return Long.compare(attack1.getSendingEpochSecond(), attack2.getSendingEpochSecond());
             } else {
-                return attack1.getLandingTime().compareTo(attack2.getLandingTime());
+                return Long.compare(attack1.getLandingEpochSecond(), attack2.getLandingEpochSecond());
             }
         });
         if (targetAttacks.size() > 1) {
@@ -547,18 +543,17 @@ public class CommandController implements Initializable {
 
     /**
      * Saves the command templates to database and updates the commands.
-     * TODO move DB operations to the Database class
      * @param actionEvent button press
      */
     public void saveTemplates(ActionEvent actionEvent) {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            conn.prepareStatement("DELETE FROM templates").execute();
-            PreparedStatement ps = conn.prepareStatement("INSERT INTO templates VALUES(?, ?)");
-            ps.setString(1, template1.getText());
-            ps.setString(2, template2.getText());
-            ps.execute();
-            conn.close();
+            Database.transaction(() -> {
+                Database.prepare("DELETE FROM templates").execute();
+                PreparedStatement ps = Database.prepare("INSERT INTO templates VALUES(?, ?)");
+                ps.setString(1, template1.getText());
+                ps.setString(2, template2.getText());
+                ps.execute();
+            });
             updateCommands();
         } catch (SQLException e) {
             e.printStackTrace();
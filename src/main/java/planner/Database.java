@@ -1,7 +1,302 @@
 package planner;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Handles the DB communications.
+ * Keeps one long-lived connection to the database in App.DB and a cache of prepared statements,
+ * so callers can prepare the same SQL repeatedly without reopening the file or recompiling the query.
+ * The connection is shared, so this is meant to be used from one thread at a time.
  */
 public class Database {
+
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private static Connection connection;
+
+    private static String connectedUrl;
+
+    private static final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+
+    /**
+     * Returns the shared connection, (re)opening it if App.DB has changed.
+     * @return open connection to App.DB
+     * @throws SQLException if the database could not be opened
+     */
+    public static synchronized Connection getConnection() throws SQLException {
+        if (connection == null || connection.isClosed() || !App.DB.equals(connectedUrl)) {
+            close();
+            connection = DriverManager.getConnection(App.DB);
+            connectedUrl = App.DB;
+            try (Statement pragmas = connection.createStatement()) {
+                // Write-ahead logging lets readers and the writer work without blocking each other,
+                // and only needs an fsync at checkpoints when synchronous=NORMAL
+                pragmas.execute("PRAGMA journal_mode=WAL");
+                pragmas.execute("PRAGMA synchronous=NORMAL");
+                pragmas.execute("PRAGMA mmap_size=268435456");
+                pragmas.execute("PRAGMA temp_store=MEMORY");
+            }
+        }
+        return connection;
+    }
+
+
+    /**
+     * Returns a cached prepared statement for the SQL, preparing it on first use.
+     * Parameters set on a previous use are cleared.
+     * Do not use for one-off SQL with values concatenated in; see execute.
+     * @param sql statement, with ? for parameters
+     * @return prepared statement
+     */
+    public static synchronized PreparedStatement prepare(String sql) throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = conn.prepareStatement(sql);
+            statements.put(sql, ps);
+        } else {
+            ps.clearParameters();
+            ps.clearBatch();
+        }
+        return ps;
+    }
+
+
+    /**
+     * Runs a cached query without parameters.
+     * The ResultSet is valid until the same SQL is run again.
+     */
+    public static ResultSet query(String sql) throws SQLException {
+        return prepare(sql).executeQuery();
+    }
+
+
+    /**
+     * Executes a one-off statement without caching it.
+     */
+    public static synchronized void execute(String sql) throws SQLException {
+        try (Statement statement = getConnection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+
+    /**
+     * Runs the work in a single transaction. Commits if the work completes, rolls back otherwise.
+     * Nested calls join the outer transaction.
+     * @param work database operations
+     * @throws SQLException if the work or the commit fails
+     */
+    public static synchronized void transaction(Work work) throws SQLException {
+        Connection conn = getConnection();
+        if (!conn.getAutoCommit()) {
+            work.run();
+            return;
+        }
+        conn.setAutoCommit(false);
+        try {
+            work.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+
+    /**
+     * Closes cached statements and the connection.
+     */
+    public static synchronized void close() {
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        connection = null;
+        connectedUrl = null;
+    }
+
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Database operations to be run in a transaction.
+     */
+    @FunctionalInterface
+    public interface Work {
+        void run() throws SQLException;
+    }
+
+
+    /**
+     * Creates any missing tables.
+     */
+    public static void createTables() {
+        try {
+            execute("create table if not exists artefacts\n" +
+                    "(\n" +
+                    "    coordId int not null\n" +
+                    "        constraint artefacts_pk\n" +
+                    "            primary key,\n" +
+                    "    small_arte int default 0,\n" +
+                    "    large_arte int default 0,\n" +
+                    "    unique_arte int default 0\n" +
+                    ")");
+            execute("create table if not exists attacker_info\n" +
+                    "(\n" +
+                    "    coordId int not null\n" +
+                    "        constraint attacker_info_pk\n" +
+                    "            primary key,\n" +
+                    "    tsLvl int default 0 not null,\n" +
+                    "    arteSpeed double default 1.0 not null,\n" +
+                    "    heroBoots int default 0 not null,\n" +
+                    "    unitSpeed int default 3 not null\n" +
+                    ")");
+            execute("create table if not exists attacks\n" +
+                    "(\n" +
+                    "    a_coordId int not null,\n" +
+                    "    t_coordId int not null,\n" +
+                    "    landing_time String not null,\n" +
+                    "    waves int not null,\n" +
+                    "    realTgt int not null,\n" +
+                    "    conq int not null,\n" +
+                    "    time_shift int not null,\n" +
+                    "    unit_speed int not null,\n" +
+                    "    server_speed int not null,\n" +
+                    "    server_size int not null,\n" +
+                    "    withHero int not null," +
+                    "    ts int not null\n" +
+                    ")");
+            execute("create table if not exists operation_meta\n" +
+                    "(\n" +
+                    "    flex_seconds int,\n" +
+                    "    defaultLandingTime String\n" +
+                    ")");
+            execute("create table if not exists participants\n" +
+                    "(\n" +
+                    "    id integer\n" +
+                    "        constraint participants_pk\n" +
+                    "            primary key autoincrement,\n" +
+                    "    account String,\n" +
+                    "    xCoord int not null,\n" +
+                    "    yCoord int not null,\n" +
+                    "    ts int not null,\n" +
+                    "    speed double not null,\n" +
+                    "    tribe int not null,\n" +
+                    "    offstring String not null,\n" +
+                    "    offsize int not null,\n" +
+                    "    catas int not null,\n" +
+                    "    chiefs int not null,\n" +
+                    "    sendmin String,\n" +
+                    "    sendmax String,\n" +
+                    "    comment String\n" +
+                    ")");
+            execute("create table if not exists target_info\n" +
+                    "(\n" +
+                    "    coordId int not null\n" +
+                    "        constraint target_info_pk\n" +
+                    "            primary key,\n" +
+                    "    randomShiftSeconds long not null\n" +
+                    ")");
+            execute("create table if not exists templates\n" +
+                    "(\n" +
+                    "    template1 String,\n" +
+                    "    template2 String\n" +
+                    ")");
+            execute("create table if not exists updated\n" +
+                    "(\n" +
+                    "    last String not null\n" +
+                    "        constraint updated_pk\n" +
+                    "            primary key\n" +
+                    ")");
+            execute("create table if not exists village_data\n" +
+                    "(\n" +
+                    "    coordId int not null\n" +
+                    "        constraint village_data_pk\n" +
+                    "            primary key,\n" +
+                    "    capital int default 0 not null,\n" +
+                    "    offvillage int default 0 not null,\n" +
+                    "    deffvillage int default 0 not null,\n" +
+                    "    wwvillage int default 0\n" +
+                    ")");
+            execute("create table if not exists world_meta\n" +
+                    "(\n" +
+                    "    serversize INTEGER default 200,\n" +
+                    "    serverspeed INTEGER default 1,\n" +
+                    "    serverurl TEXT\n" +
+                    ")");
+            execute(worldTable("x_world"));
+            execute("create index if not exists x_world_allyName_index on x_world (allyName)");
+            // Saved attacks are upserted by attacker and target; drop duplicates left by older versions first
+            execute("DELETE FROM attacks WHERE rowid NOT IN " +
+                    "(SELECT max(rowid) FROM attacks GROUP BY a_coordId, t_coordId)");
+            execute("create unique index if not exists attacks_pair_uindex on attacks (a_coordId, t_coordId)");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * DDL for a table in the x_world format, also used for staging map.sql imports.
+     * @param name table name
+     * @return create statement
+     */
+    public static String worldTable(String name) {
+        return "create table if not exists " + name + "\n" +
+                "(\n" +
+                "    coordId int not null\n" +
+                "        constraint " + name + "_pk\n" +
+                "            primary key,\n" +
+                "    xCoord int not null,\n" +
+                "    yCoord int not null,\n" +
+                "    tribe int not null,\n" +
+                "    villageId int not null,\n" +
+                "    villageName String not null,\n" +
+                "    playerId int not null,\n" +
+                "    playerName String not null,\n" +
+                "    allyId int not null,\n" +
+                "    allyName String not null,\n" +
+                "    population int not null,\n" +
+                "    unused1 String,\n" +
+                "    capital String not null,\n" +
+                "    unused2 String,\n" +
+                "    unused3 String,\n" +
+                "    unused4 String\n" +
+                ")";
+    }
 }
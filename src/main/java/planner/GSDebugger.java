@@ -2,7 +2,6 @@ package planner;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -13,7 +12,8 @@ import planner.entities.Attack;
 import planner.entities.AttackerVillage;
 import planner.entities.Operation;
 import planner.entities.TargetVillage;
-import planner.util.GeneticScheduler;
+import planner.util.FlexWindowSearch;
+import planner.util.Scheduler;
 
 public class GSDebugger {
 
@@ -37,7 +37,7 @@ public class GSDebugger {
 
 
 
-        GeneticScheduler geneticScheduler = new GeneticScheduler(
+        FlexWindowSearch search = new FlexWindowSearch(
                 operation,
                 240.0,
                 0.8
@@ -45,18 +45,15 @@ public class GSDebugger {
         Map<Integer, Long> solution = null;
 
         try {
-            for (int i = operation.getRandomShiftWindow() / 60; i < 10; i++) {
-                operation.setRandomShiftWindow(i*60);
-                System.out.println("Scheduling for a flex window of " + i + " minute(s)");
-                solution = geneticScheduler.schedule();
-                if (solution != null) break;
-            }
+            solution = search.search(Math.max(1, operation.getRandomShiftWindow() / 60) * 60, 540, 60);
         } catch (Exception e) {
             e.printStackTrace();
         }
         if (solution != null) {
+            operation.setRandomShiftWindow(search.getWindow());
+            System.out.println("Flex window: " + search.getWindow() / 60 + " minute(s)");
             printSolution(
-                    geneticScheduler,
+                    search.getScheduler(),
                     solution,
                     targetsMap,
                     operation.getAttackers(),
@@ -75,7 +72,7 @@ public class GSDebugger {
      * @param attackers attacker list
      * @param landingTime default landing time
      */
-    public static void printSolution(GeneticScheduler geneticScheduler, Map<Integer, Long> solution,
+    public static void printSolution(Scheduler geneticScheduler, Map<Integer, Long> solution,
                                       Map<Integer, TargetVillage> targetsMap, List<AttackerVillage> attackers,
                                       LocalDateTime landingTime) {
         System.out.println();
@@ -111,12 +108,10 @@ public class GSDebugger {
         for (List<Attack> attacksForPlayer : attacksPerPlayer.values()) {
             if (!attacksForPlayer.isEmpty()) {
                 System.out.println(attacksForPlayer.get(0).getAttacker().getPlayerName());
-                attacksForPlayer.sort(Comparator.comparing(Attack::getSendingTime));
+                attacksForPlayer.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
                 for (int i = 0; i < attacksForPlayer.size()-1; i++) {
-                    long interval = ChronoUnit.SECONDS.between(
-                            attacksForPlayer.get(i).getSendingTime(),
-                            attacksForPlayer.get(i+1).getSendingTime()
-                    );
+                    long interval = attacksForPlayer.get(i+1).getSendingEpochSecond()
+                            - attacksForPlayer.get(i).getSendingEpochSecond();
                     System.out.println(
                             interval +
                                     " " +
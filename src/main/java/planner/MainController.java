@@ -4,13 +4,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -20,7 +16,9 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.event.ActionEvent;
@@ -33,10 +31,11 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import lombok.Getter;
 import planner.util.Converters;
+import planner.util.MapSqlImporter;
+import planner.util.WorldDiff;
 
 /**
  * Handles data updates.
- * TODO move DB operations to the Database class
  */
 public class MainController implements Initializable {
 
@@ -52,6 +51,9 @@ public class MainController implements Initializable {
     @Getter
     private BooleanProperty attackersAdded = new SimpleBooleanProperty(false);
 
+    @Getter
+    private ObjectProperty<WorldDiff> worldDiff = new SimpleObjectProperty<>(null);
+
     private String action;
 
     @FXML
@@ -110,22 +112,20 @@ public class MainController implements Initializable {
         noParticipants.setText("No participants in database");
 
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs1 = conn.prepareStatement("SELECT * FROM updated").executeQuery();
+            ResultSet rs1 = Database.query("SELECT * FROM updated");
             if (rs1 != null && !rs1.isClosed()) {
                 lastUpdated.setText("Map.sql updated at " + rs1.getString("last"));
             }
-            ResultSet rs2 = conn.prepareStatement("SELECT COUNT(*) FROM participants").executeQuery();
+            ResultSet rs2 = Database.query("SELECT COUNT(*) FROM participants");
             if (rs2 != null && !rs2.isClosed()) {
                 noParticipants.setText("Current participants: " + rs2.getInt(1));
             }
-            ResultSet rs3 = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
+            ResultSet rs3 = Database.query("SELECT * FROM world_meta");
             if (rs3 != null && !rs3.isClosed()) {
                 serverUrl.setText("Server: " + rs3.getString("serverurl"));
                 serverSize.setText("Size: " + rs3.getString("serversize"));
                 serverSpeed.setText("Speed: " + rs3.getString("serverspeed"));
             }
-            conn.close();
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Could not connect to database");
@@ -147,26 +147,14 @@ public class MainController implements Initializable {
             try {
                br = new BufferedReader(new FileReader(f));
 
-                Connection conn = DriverManager.getConnection(App.DB);
-                conn.prepareStatement("DELETE FROM x_world").execute();
-
-                String line;
-                while ((line = br.readLine()) != null) {
-                    if (line.endsWith(";")) {
-                        conn.prepareStatement(line).execute();
-                    }
-                }
+                WorldDiff diff = MapSqlImporter.importMapSql(br);
+                System.out.println("Imported " + diff.getRows() + " villages from map.sql: " + diff);
 
                 // Update last updated field
-                conn.prepareStatement("DELETE FROM updated").execute();
-                DateTimeFormatter frm = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
-                String updateInfo = LocalDateTime.now().format(frm);
-                conn.prepareStatement("INSERT INTO updated VALUES ("
-                        + "'" + updateInfo + "'"
-                        + ")").execute();
+                String updateInfo = MapSqlImporter.markUpdated();
                 lastUpdated.setText("Map.sql updated at " + updateInfo);
-                App.displayInfoAlert("Map.sql updated", "Reload operation to see the changes.");
-                conn.close();
+                worldDiff.set(diff);
+                App.displayInfoAlert("Map.sql updated", diff.toString());
             } catch (Exception e) {
                 e.printStackTrace();
                 System.out.println("Could not update map.sql");
@@ -187,11 +175,19 @@ public class MainController implements Initializable {
      * Updates map.sql from server.
      */
     public void downloadMapSql() {
-        String updateInfo = App.downloadMapSql();
-        lastUpdated.setText("Map.sql updated at " + updateInfo);
-        if (!updateInfo.equals("[error]")) {
-            App.displayInfoAlert("Map.sql updated", "Reload operation to see the changes.");
+        WorldDiff diff = App.downloadMapSql();
+        if (diff == null) {
+            lastUpdated.setText("Map.sql updated at [error]");
+            return;
+        }
+        try {
+            String updateInfo = MapSqlImporter.markUpdated();
+            lastUpdated.setText("Map.sql updated at " + updateInfo);
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
+        worldDiff.set(diff);
+        App.displayInfoAlert("Map.sql updated", diff.toString());
     }
 
 
@@ -200,12 +196,12 @@ public class MainController implements Initializable {
      */
     public void clearOperation() {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            conn.prepareStatement("DELETE FROM participants").execute();
-            conn.prepareStatement("DELETE FROM attacker_info").execute();
-            conn.prepareStatement("DELETE FROM target_info").execute();
-            conn.prepareStatement("DELETE FROM attacks").execute();
-            conn.close();
+            Database.transaction(() -> {
+                Database.execute("DELETE FROM participants");
+                Database.execute("DELETE FROM attacker_info");
+                Database.execute("DELETE FROM target_info");
+                Database.execute("DELETE FROM attacks");
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -246,23 +242,21 @@ public class MainController implements Initializable {
 
         // Add participants to database
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
             for (String o : offs) {
                 String[] off = o.split("\t");
                 int xCoord = Integer.parseInt(off[2].replace("−", "-").replace("\u202D", ""));
                 int yCoord = Integer.parseInt(off[3].replace("−", "-").replace("\u202D", ""));
-                PreparedStatement checkDupes = conn.prepareStatement(
+                PreparedStatement checkDupes = Database.prepare(
                         "SELECT COUNT(*) FROM participants WHERE xCoord=? AND yCoord=?"
                 );
                 checkDupes.setInt(1, xCoord);
                 checkDupes.setInt(2, yCoord);
                 ResultSet dupes = checkDupes.executeQuery();
                 if (dupes.getInt(1) > 0) {
-                    conn.close();
                     return;
                 }
                 String sql = "INSERT INTO participants VALUES (null,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-                PreparedStatement ps = conn.prepareStatement(sql);
+                PreparedStatement ps = Database.prepare(sql);
                 ps.setString(1, off[1]);
                 ps.setInt(2, xCoord);
                 ps.setInt(3, yCoord);
@@ -278,11 +272,10 @@ public class MainController implements Initializable {
                 ps.setString(13, (off.length > 12 ? off[12] : null));
                 ps.execute();
             }
-            ResultSet rs = conn.prepareStatement("SELECT COUNT(*) FROM participants").executeQuery();
+            ResultSet rs = Database.query("SELECT COUNT(*) FROM participants");
             if (rs != null && !rs.isClosed()) {
                 noParticipants.setText("Current participants: " + rs.getInt(1));
             }
-            conn.close();
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Database error");
@@ -316,14 +309,15 @@ public class MainController implements Initializable {
                 co[i] *= Integer.parseInt(coordi);
             }
             try {
-                Connection conn = DriverManager.getConnection(App.DB);
                 String sql = "INSERT INTO village_data (coordId, " + column + ") VALUES (" +
                         "(SELECT coordId " +
                         "FROM x_world " +
-                        "WHERE xCoord=" + co[0] + " AND yCoord=" + co[1] + "), 1) " +
+                        "WHERE xCoord=? AND yCoord=?), 1) " +
                         "ON CONFLICT(coordId) DO UPDATE SET " + column + "=1";
-                conn.prepareStatement(sql).execute();
-                conn.close();
+                PreparedStatement ps = Database.prepare(sql);
+                ps.setInt(1, co[0]);
+                ps.setInt(2, co[1]);
+                ps.execute();
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -355,20 +349,22 @@ public class MainController implements Initializable {
      */
     private void updateArtefacts(String size, Map<Integer, Integer> artefacts, Set<Integer> uniques) {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            conn.prepareStatement("UPDATE artefacts SET " + size + "=0").execute();
-            if (size.equals("large_arte")) {
-                conn.prepareStatement("UPDATE artefacts SET unique_arte=0").execute();
-            }
-            for (int coordId : artefacts.keySet()) {
-                String col = size;
-                if (uniques.contains(coordId)) col = "unique_arte";
-                String sql = "INSERT INTO artefacts (coordId, " + col + ") " +
-                        "VALUES (" + coordId + ", " + artefacts.get(coordId) + ") " +
-                        "ON CONFLICT(coordId) DO UPDATE SET " + col + "=" + artefacts.get(coordId);
-                conn.prepareStatement(sql).execute();
-            }
-            conn.close();
+            Database.transaction(() -> {
+                Database.execute("UPDATE artefacts SET " + size + "=0");
+                if (size.equals("large_arte")) {
+                    Database.execute("UPDATE artefacts SET unique_arte=0");
+                }
+                for (int coordId : artefacts.keySet()) {
+                    String col = size;
+                    if (uniques.contains(coordId)) col = "unique_arte";
+                    String sql = "INSERT INTO artefacts (coordId, " + col + ") VALUES (?, ?) " +
+                            "ON CONFLICT(coordId) DO UPDATE SET " + col + "=excluded." + col;
+                    PreparedStatement ps = Database.prepare(sql);
+                    ps.setInt(1, coordId);
+                    ps.setInt(2, artefacts.get(coordId));
+                    ps.execute();
+                }
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -485,7 +481,6 @@ public class MainController implements Initializable {
     /**
      * Reads server size, speed, and url from the text field.
      * Saves these to DB.
-     * TODO move DB operations to a new class
      */
     private void configureServer() {
         try {
@@ -497,20 +492,18 @@ public class MainController implements Initializable {
                 if (size < 0 || speed < 0 || url.isEmpty()) {
                     throw new Exception("Syntax error");
                 }
-                Connection conn = DriverManager.getConnection(App.DB);
-                conn.prepareStatement("DELETE FROM world_meta").execute();
-                PreparedStatement ins = conn.prepareStatement("INSERT INTO world_meta VALUES(?,?,?)");
+                Database.execute("DELETE FROM world_meta");
+                PreparedStatement ins = Database.prepare("INSERT INTO world_meta VALUES(?,?,?)");
                 ins.setInt(1, size);
                 ins.setInt(2, speed);
                 ins.setString(3, url);
                 ins.execute();
-                ResultSet rs = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
+                ResultSet rs = Database.query("SELECT * FROM world_meta");
                 if (rs != null && !rs.isClosed()) {
                     serverUrl.setText("Server: " + rs.getString("serverurl"));
                     serverSize.setText("Size: " + rs.getString("serversize"));
                     serverSpeed.setText("Speed: " + rs.getString("serverspeed"));
                 }
-                conn.close();
             }
         } catch (Exception e) {
             e.printStackTrace();
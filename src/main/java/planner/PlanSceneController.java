@@ -1,16 +1,18 @@
 package planner;
 
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -39,11 +41,35 @@ import planner.entities.Attack;
 import planner.entities.AttackerVillage;
 import planner.entities.Operation;
 import planner.entities.TargetVillage;
+import planner.util.AnnealingScheduler;
 import planner.util.Converters;
+import planner.util.FlexWindowSearch;
 import planner.util.GeneticScheduler;
+import planner.util.Scheduler;
+import planner.util.TabuScheduler;
 
 public class PlanSceneController implements Initializable {
 
+    /**
+     * Time limit for optimising the landing times with one flex window.
+     */
+    private static final Duration OPTIMISE_BUDGET = Duration.ofMinutes(1);
+
+    /**
+     * Participants suggested at the top of the attacker dropdown of a target.
+     */
+    private static final int SUGGESTED_ATTACKERS = 5;
+
+    /**
+     * Engines for optimising the landing times, by name.
+     */
+    private static final Map<String, Scheduler.Factory> SCHEDULERS = new LinkedHashMap<>();
+    static {
+        SCHEDULERS.put("Genetic", GeneticScheduler::new);
+        SCHEDULERS.put("Simulated annealing", AnnealingScheduler::new);
+        SCHEDULERS.put("Tabu search", TabuScheduler::new);
+    }
+
     @Getter
     private StringProperty toScene = new SimpleStringProperty("");
 
@@ -79,6 +105,14 @@ public class PlanSceneController implements Initializable {
     @FXML
     CheckBox planned_attacks;
 
+    @FXML
+    TextField distanceField;
+
+    /**
+     * Only targets within this many squares of a participant are shown; 0 for no limit.
+     */
+    int distance = 0;
+
     @FXML
     TextField landingTime;
 
@@ -90,6 +124,9 @@ public class PlanSceneController implements Initializable {
     @FXML
     Button optimiseButton;
 
+    @FXML
+    ComboBox<String> schedulerPicker;
+
     @FXML
     RadioButton fakes;
 
@@ -151,6 +188,17 @@ public class PlanSceneController implements Initializable {
             }
         }
 
+        // Listen to the distance field
+        distanceField.focusedProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue && oldValue) {
+                distanceField.fireEvent(new ActionEvent());
+            }
+        });
+
+        // Scheduler engines
+        schedulerPicker.getItems().addAll(SCHEDULERS.keySet());
+        schedulerPicker.getSelectionModel().selectFirst();
+
         // Group fake/real radio buttons
         ToggleGroup attackType = new ToggleGroup();
         fakes.setToggleGroup(attackType);
@@ -194,7 +242,7 @@ public class PlanSceneController implements Initializable {
      */
     public void newOperation() {
 
-        this.operation = new Operation();
+        this.operation = new Operation(true);
         initOperation();
     }
 
@@ -204,7 +252,7 @@ public class PlanSceneController implements Initializable {
      */
     public void loadOperation() {
         try {
-            this.operation = Operation.load();
+            this.operation = Operation.load(true);
             if (this.operation != null) {
                 initOperation();
             }
@@ -220,45 +268,18 @@ public class PlanSceneController implements Initializable {
      */
     private void initOperation() {
 
-        // Add all alliances as checkboxes
-        Set<String> enemies = new HashSet<>();
-        Map<String, Integer> enemyCounts = new HashMap<>();
-        // TODO move DB operation to the Database class
+        // Add all alliances as checkboxes, largest first
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT allyName FROM x_world").executeQuery();
+            ResultSet rs = Database.query(
+                    "SELECT allyName, count(*) AS villages FROM x_world GROUP BY allyName ORDER BY villages DESC");
             while (rs.next()) {
-                String enemyAlly = rs.getString("allyName");
-                if (enemies.contains(enemyAlly)) {
-                    enemyCounts.put(enemyAlly, enemyCounts.get(enemyAlly)+1);
-                } else {
-                    enemyCounts.put(enemyAlly, 1);
-                }
-                enemies.add(enemyAlly);
+                CheckBox c = new CheckBox(rs.getString("allyName"));
+                c.setOnAction(this::refreshTargets);
+                enemyTickboxes.getChildren().add(c);
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        // Naïve sort, number of alliances is small
-        List<String> sortedEnemies = new ArrayList<>();
-        for (int i = 0; i < enemies.size(); i++) {
-            int maxCount = 0;
-            String maxE = null;
-            for (String ec : enemyCounts.keySet()) {
-                if (enemyCounts.get(ec) > maxCount) {
-                    maxCount = enemyCounts.get(ec);
-                    maxE = ec;
-                }
-            }
-            sortedEnemies.add(maxE);
-            enemyCounts.remove(maxE);
-        }
-        for (String e : sortedEnemies) {
-            CheckBox c = new CheckBox(e);
-            c.setOnAction(this::refreshTargets);
-            enemyTickboxes.getChildren().add(c);
-        }
 
         // Update operation and view
         updateCycle();
@@ -281,17 +302,11 @@ public class PlanSceneController implements Initializable {
             }
         });
 
-        // Listen to changes in attacks
-        for (Map<Integer, Attack> attackerAttacks : operation.getAttacks().values()) {
-            for (Attack attack : attackerAttacks.values()) {
-                attack.getUpdated().addListener((observable, oldValue, newValue) -> {
-                    if (newValue && !oldValue) {
-                        attack.getUpdated().set(false);
-                        this.updateCycle();
-                    }
-                });
-            }
+        // Listen to changes in attacks, also the ones created later
+        for (Attack attack : operation.getAttacks().values()) {
+            listenTo(attack);
         }
+        operation.getAttacks().addCreationListener(this::listenTo);
         // Listen to changes in participants
         for (AttackerVillage attackerVillage : operation.getAttackers()) {
             attackerVillage.getUpdated().addListener((observable, oldValue, newValue) -> {
@@ -304,6 +319,19 @@ public class PlanSceneController implements Initializable {
     }
 
 
+    /**
+     * Redraws the view when the attack is updated.
+     */
+    private void listenTo(Attack attack) {
+        attack.getUpdated().addListener((observable, oldValue, newValue) -> {
+            if (newValue && !oldValue) {
+                attack.getUpdated().set(false);
+                this.updateCycle();
+            }
+        });
+    }
+
+
     /**
      * Master update method; first triggers the update in the Operation object and then redraws the screen.
      */
@@ -340,12 +368,23 @@ public class PlanSceneController implements Initializable {
             }
         }
 
-        // Save the alliance selection
+        // Save the alliance selection, and load the villages of newly selected alliances
         this.operation.setEnemyAlliances(enemyAlliances);
+        this.operation.loadAlliances(enemyAlliances);
+
+        // With a distance limit, only look at the villages around the participants
+        Collection<TargetVillage> candidates = operation.getTargets();
+        if (distance > 0) {
+            Set<TargetVillage> nearby = new LinkedHashSet<>();
+            for (AttackerVillage attackerVillage : operation.getAttackers()) {
+                nearby.addAll(operation.targetsWithin(attackerVillage, distance));
+            }
+            candidates = nearby;
+        }
 
         // For those alliances, check types of village to show
         List<TargetVillage> shownVillages = new ArrayList<>();
-        for (TargetVillage target : operation.getTargets()) {
+        for (TargetVillage target : candidates) {
             if (enemyAlliances.contains(target.getAllyName())
                     && (
                     (target.isCapital() && this.caps.isSelected())
@@ -487,13 +526,16 @@ public class PlanSceneController implements Initializable {
         row.getChildren().add(targetLandTime);
 
         // Dropdown for adding an attack
+        // A few of the closest participants that can send inside their send window come first
+        Set<AttackerVillage> pickable = new LinkedHashSet<>(operation.suggestAttackers(
+                target,
+                Converters.toEpochSecond(operation.getLandTimes().get(target.getCoordId())),
+                SUGGESTED_ATTACKERS));
+        pickable.addAll(operation.getAttackers());
         ComboBox<Attack> attackerPicker = new ComboBox<>();
-        for (AttackerVillage attackerVillage : operation.getAttackers()) {
+        for (AttackerVillage attackerVillage : pickable) {
             // Deep copy
-            Attack attack = operation
-                    .getAttacks()
-                    .get(attackerVillage.getCoordId())
-                    .get(target.getCoordId());
+            Attack attack = operation.previewAttack(attackerVillage, target);
 
             Attack pickableAttack = new Attack(
                     attack.getTarget(),
@@ -529,8 +571,7 @@ public class PlanSceneController implements Initializable {
             if (pickedAttack != null) {
                 Attack attack = operation
                         .getAttacks()
-                        .get(pickedAttack.getAttacker().getCoordId())
-                        .get(pickedAttack.getTarget().getCoordId());
+                        .getOrCreate(pickedAttack.getAttacker(), pickedAttack.getTarget());
                 if (!attack.getAttacker().getPlannedAttacks().contains(attack)) {
                     attack.getAttacker().getPlannedAttacks().add(attack);
                 }
@@ -559,15 +600,14 @@ public class PlanSceneController implements Initializable {
 
         // List attacks in landing order
         List<Attack> rowAttacks = new ArrayList<>();
-        for (Map<Integer, Attack> attackMap: operation.getAttacks().values()) {
-            Attack attack = attackMap.get(target.getCoordId());
+        for (Attack attack : operation.getAttacks().forTarget(target.getCoordId())) {
             if (attack.getWaves() > 0) rowAttacks.add(attack);
         }
         rowAttacks.sort((attack1, attack2) -> {
-            if (attack1.getLandingTime().equals(attack2.getLandingTime())) {
-                return attack1.getSendingTime().compareTo(attack2.getSendingTime());
+            if (attack1.getLandingEpochSecond() == attack2.getLandingEpochSecond()) {
+                return Long.compare(attack1.getSendingEpochSecond(), attack2.getSendingEpochSecond());
             } else {
-                return attack1.getLandingTime().compareTo(attack2.getLandingTime());
+                return Long.compare(attack1.getLandingEpochSecond(), attack2.getLandingEpochSecond());
             }
         });
         for (Attack attack : rowAttacks) {
@@ -603,13 +643,14 @@ public class PlanSceneController implements Initializable {
 
 
     /**
-     * Optimises the landing times with GeneticScheduler.
+     * Optimises the landing times with the chosen scheduler engine.
      * @param actionEvent button press
      */
     public void optimiseTimes(ActionEvent actionEvent) {
 
         if (!optimiseThread.isAlive()) {
 
+            Scheduler.Factory engine = SCHEDULERS.get(schedulerPicker.getValue());
             Task<Map<Integer, Long>> task = new Task<>() {
                 @Override
                 protected Map<Integer, Long> call() {
@@ -621,31 +662,30 @@ public class PlanSceneController implements Initializable {
                         }
                     }
 
-                    GeneticScheduler gs = new GeneticScheduler(
+                    FlexWindowSearch search = new FlexWindowSearch(
                             operation,
                             240.0,
                             0.8
                     );
+                    search.setBudget(OPTIMISE_BUDGET);
+                    search.setEngine(engine);
+                    updateMessage("Optimising... 0%");
+                    search.getProgress().addListener((observable, oldValue, newValue) -> {
+                        long percents = Math.round((double) newValue * 100);
+                        updateMessage("Optimising... " + percents + "%");
+                    });
                     Map<Integer, Long> solution = null;
                     try {
-                        for (int i = operation.getRandomShiftWindow() / 60; i <= 10; i++) {
-                            updateMessage("Optimising... 0%");
-                            gs.getProgress().addListener((observable, oldValue, newValue) -> {
-                                long percents = Math.round((double) newValue * 100);
-                                updateMessage("Optimising... " + percents + "%");
-                            });
-                            operation.setRandomShiftWindow(i * 60);
-                            System.out.println("Scheduling for a flex window of " + i + " minute(s)");
-                            solution = gs.schedule();
-                            System.out.println(solution);
-                            if (solution != null) break;
-                        }
+                        // Flex windows of whole minutes, up to 10 minutes
+                        solution = search.search(Math.max(1, operation.getRandomShiftWindow() / 60) * 60, 600, 60);
+                        System.out.println(solution);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                     if (solution != null) {
+                        operation.setRandomShiftWindow(search.getWindow());
                         GSDebugger.printSolution(
-                                gs,
+                                search.getScheduler(),
                                 solution,
                                 targetsMap,
                                 operation.getAttackers(),
@@ -699,6 +739,22 @@ public class PlanSceneController implements Initializable {
     }
 
 
+    /**
+     * Updates the distance limit of the shown targets.
+     * @param actionEvent focus leave or enter keypress
+     */
+    public void updateDistance(ActionEvent actionEvent) {
+        try {
+            distance = Integer.parseInt(distanceField.getText());
+            if (distance < 0) distance = 0;
+        } catch (NumberFormatException e) {
+            distance = 0;
+        }
+        distanceField.setText(""+distance);
+        if (operation != null) this.updateTargets();
+    }
+
+
     /**
      * Updates the default status of the hero checkbox based on if we're adding fakes or reals.
      */
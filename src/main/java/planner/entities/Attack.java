@@ -15,104 +15,249 @@ import javafx.scene.layout.Pane;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import planner.App;
+import planner.util.Converters;
+import planner.util.TravelTimeKernel;
 
-@AllArgsConstructor
 public class Attack {
 
-    @Getter @Setter
+    @Getter
     private TargetVillage target;
 
-    @Getter @Setter
+    @Getter
     private AttackerVillage attacker;
 
-    @Getter @Setter
+    @Getter
     private int waves;
 
-    @Getter @Setter
+    @Getter
     private boolean real;
 
-    @Getter @Setter
+    @Getter
     private boolean conq;
 
-    @Getter @Setter
+    @Getter
     private int unitSpeed;
 
-    @Getter @Setter
+    @Getter
     private int ts;
 
-    @Setter
-    private LocalDateTime landingTime;
+    /**
+     * Landing time without the shift, in seconds from Converters.toEpochSecond.
+     */
+    private long landingTime;
 
-    @Getter @Setter
+    @Getter
     private int landingTimeShift;
 
-    @Getter @Setter
+    @Getter
     private int serverSpeed;
 
-    @Getter @Setter
+    @Getter
     private int serverSize;
 
     @Getter @Setter
     private boolean conflicting;
 
-    @Getter @Setter
+    @Getter
     private boolean withHero;
 
     @Getter @Setter
     private BooleanProperty updated;
 
+    /**
+     * True if the attack has changed since it was last loaded or saved.
+     */
+    @Getter @Setter
+    private boolean dirty = false;
+
+    /**
+     * Travel time from the last calculation, or -1 if it has to be recalculated.
+     * Cleared by the setters of the travel parameters; the attacker's artefact speed
+     * and hero boots it was calculated with are compared on each use.
+     */
+    private long cachedTravelSeconds = -1;
+
+    private double cachedArteSpeed;
+
+    private int cachedHeroBoots;
+
+
+    public Attack(TargetVillage target,
+                  AttackerVillage attacker,
+                  int waves,
+                  boolean real,
+                  boolean conq,
+                  int unitSpeed,
+                  int ts,
+                  LocalDateTime landingTime,
+                  int landingTimeShift,
+                  int serverSpeed,
+                  int serverSize,
+                  boolean conflicting,
+                  boolean withHero,
+                  BooleanProperty updated) {
+        this.target = target;
+        this.attacker = attacker;
+        this.waves = waves;
+        this.real = real;
+        this.conq = conq;
+        this.unitSpeed = unitSpeed;
+        this.ts = ts;
+        this.landingTime = Converters.toEpochSecond(landingTime);
+        this.landingTimeShift = landingTimeShift;
+        this.serverSpeed = serverSpeed;
+        this.serverSize = serverSize;
+        this.conflicting = conflicting;
+        this.withHero = withHero;
+        this.updated = updated;
+    }
+
+
+    /*
+      Setters of the saved fields mark the attack dirty when the value changes.
+     */
+
+    public void setWaves(int waves) {
+        if (this.waves != waves) dirty = true;
+        this.waves = waves;
+    }
+
+    public void setReal(boolean real) {
+        if (this.real != real) dirty = true;
+        this.real = real;
+    }
+
+    public void setConq(boolean conq) {
+        if (this.conq != conq) dirty = true;
+        this.conq = conq;
+    }
+
+    public void setUnitSpeed(int unitSpeed) {
+        if (this.unitSpeed != unitSpeed) {
+            dirty = true;
+            cachedTravelSeconds = -1;
+        }
+        this.unitSpeed = unitSpeed;
+    }
+
+    public void setTs(int ts) {
+        if (this.ts != ts) {
+            dirty = true;
+            cachedTravelSeconds = -1;
+        }
+        this.ts = ts;
+    }
+
+    public void setLandingTimeShift(int landingTimeShift) {
+        if (this.landingTimeShift != landingTimeShift) dirty = true;
+        this.landingTimeShift = landingTimeShift;
+    }
+
+    public void setServerSpeed(int serverSpeed) {
+        if (this.serverSpeed != serverSpeed) {
+            dirty = true;
+            cachedTravelSeconds = -1;
+        }
+        this.serverSpeed = serverSpeed;
+    }
+
+    public void setServerSize(int serverSize) {
+        if (this.serverSize != serverSize) {
+            dirty = true;
+            cachedTravelSeconds = -1;
+        }
+        this.serverSize = serverSize;
+    }
+
+    public void setWithHero(boolean withHero) {
+        if (this.withHero != withHero) {
+            dirty = true;
+            cachedTravelSeconds = -1;
+        }
+        this.withHero = withHero;
+    }
+
+    public void setTarget(TargetVillage target) {
+        this.target = target;
+        cachedTravelSeconds = -1;
+    }
+
+    public void setAttacker(AttackerVillage attacker) {
+        this.attacker = attacker;
+        cachedTravelSeconds = -1;
+    }
+
+
+    public void setLandingTime(LocalDateTime landingTime) {
+        this.landingTime = Converters.toEpochSecond(landingTime);
+    }
+
+
+    /**
+     * @param landingTime landing time without the shift, in seconds from Converters.toEpochSecond
+     */
+    public void setLandingEpochSecond(long landingTime) {
+        this.landingTime = landingTime;
+    }
+
+
+    /**
+     * @return shifted landing time in seconds from Converters.toEpochSecond
+     */
+    public long getLandingEpochSecond() {
+        return landingTime + landingTimeShift;
+    }
+
+
+    /**
+     * @return sending time in seconds from Converters.toEpochSecond
+     */
+    public long getSendingEpochSecond() {
+        return this.getLandingEpochSecond() - this.travelSeconds();
+    }
+
 
     public LocalDateTime getLandingTime() {
-        return landingTime.plusSeconds(landingTimeShift);
+        return Converters.fromEpochSecond(this.getLandingEpochSecond());
     }
 
 
     public LocalDateTime getSendingTime() {
-        return this.getLandingTime().minusSeconds(this.travelSeconds());
+        return Converters.fromEpochSecond(this.getSendingEpochSecond());
     }
 
 
     /**
-     * Calculates travel time on a T4 (2019) Travian map.
+     * Travel time on a T4 (2019) Travian map, calculated once and reused until a parameter changes.
      * @return travel time in seconds
      */
     public long travelSeconds() {
-        // Distance on a torus surface
-        double distance = Math.sqrt(
-                Math.pow(
-                        Math.min(
-                                Math.abs(this.attacker.getXCoord() - this.target.getXCoord()),
-                                this.serverSize*2+1 - Math.abs(this.attacker.getXCoord() - this.target.getXCoord())),
-                        2)
-                + Math.pow(
-                        Math.min(
-                                Math.abs(this.attacker.getYCoord() - this.target.getYCoord()),
-                                this.serverSize*2+1 - Math.abs(this.attacker.getYCoord() - this.target.getYCoord())),
-                        2)
-        );
-        // Round to 5 decimal places as per Travian implementation
-        distance = Math.round(distance * 100000) / 100000.0;
-        // Baseline speed
-        double squaresPerSecond = unitSpeed * serverSpeed * this.attacker.getArteSpeed() / 60 / 60;
-        // Return if distance is under 20
-        if (distance <= 20) return Math.round(distance / squaresPerSecond);
-        // No-TS part of travel
-        double travelTime = 20L / squaresPerSecond;
-        // Reduce distance
-        distance -= 20;
-        // Calculate TS factor
-        double factor = 1.0 + this.getTs() * 0.2;
-        // Calculate boots factor
-        if (this.isWithHero()) factor += this.attacker.getHeroBoots() / 100.0;
-        // Adjust speed
-        squaresPerSecond *= factor;
-        // Compute remaining time
-        travelTime += distance / squaresPerSecond;
-        return Math.round(travelTime);
+        double arteSpeed = this.attacker.getArteSpeed();
+        int heroBoots = this.attacker.getHeroBoots();
+        if (cachedTravelSeconds < 0 || cachedArteSpeed != arteSpeed || cachedHeroBoots != heroBoots) {
+            cachedTravelSeconds = calculateTravelSeconds();
+            cachedArteSpeed = arteSpeed;
+            cachedHeroBoots = heroBoots;
+        }
+        return cachedTravelSeconds;
+    }
+
+
+    /**
+     * Calculates travel time on a T4 (2019) Travian map.
+     * @return travel time in seconds
+     */
+    private long calculateTravelSeconds() {
+        double distance = TravelTimeKernel.distance(
+                this.attacker.getXCoord(), this.attacker.getYCoord(),
+                this.target.getXCoord(), this.target.getYCoord(),
+                this.serverSize);
+        double squaresPerSecond = TravelTimeKernel.squaresPerSecond(unitSpeed, serverSpeed, this.attacker.getArteSpeed());
+        double factor = TravelTimeKernel.tsFactor(this.getTs(), this.isWithHero() ? this.attacker.getHeroBoots() : 0);
+        return TravelTimeKernel.travelSeconds(distance, squaresPerSecond, factor);
     }
 
 
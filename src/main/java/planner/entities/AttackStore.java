@@ -0,0 +1,145 @@
+package planner.entities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Sparse store of the attacks of an operation.
+ * An attack only exists here once it has been planned or otherwise asked for,
+ * so the size does not depend on the size of the world.
+ * Attacks are indexed both by attacker and by target coordId.
+ */
+public class AttackStore {
+
+    private final Map<Integer, Map<Integer, Attack>> byAttacker = new HashMap<>();
+
+    private final Map<Integer, Map<Integer, Attack>> byTarget = new HashMap<>();
+
+    private final BiFunction<AttackerVillage, TargetVillage, Attack> factory;
+
+    private final List<Consumer<Attack>> creationListeners = new ArrayList<>();
+
+
+    /**
+     * @param factory creates a new, unplanned attack for an attacker and a target
+     */
+    public AttackStore(BiFunction<AttackerVillage, TargetVillage, Attack> factory) {
+        this.factory = factory;
+    }
+
+
+    /**
+     * @return the attack or null if it has not been created
+     */
+    public Attack get(int attackerCoordId, int targetCoordId) {
+        Map<Integer, Attack> attackerAttacks = byAttacker.get(attackerCoordId);
+        return attackerAttacks == null ? null : attackerAttacks.get(targetCoordId);
+    }
+
+
+    /**
+     * Returns the attack, creating it first if needed.
+     * Creation listeners are notified of new attacks.
+     */
+    public Attack getOrCreate(AttackerVillage attacker, TargetVillage target) {
+        Attack attack = get(attacker.getCoordId(), target.getCoordId());
+        if (attack == null) {
+            attack = factory.apply(attacker, target);
+            byAttacker.computeIfAbsent(attacker.getCoordId(), k -> new HashMap<>()).put(target.getCoordId(), attack);
+            byTarget.computeIfAbsent(target.getCoordId(), k -> new HashMap<>()).put(attacker.getCoordId(), attack);
+            for (Consumer<Attack> listener : creationListeners) {
+                listener.accept(attack);
+            }
+        }
+        return attack;
+    }
+
+
+    /**
+     * @return existing attacks on the target
+     */
+    public Collection<Attack> forTarget(int targetCoordId) {
+        Map<Integer, Attack> targetAttacks = byTarget.get(targetCoordId);
+        return targetAttacks == null ? Collections.emptyList() : targetAttacks.values();
+    }
+
+
+    /**
+     * @return existing attacks from the attacker
+     */
+    public Collection<Attack> forAttacker(int attackerCoordId) {
+        Map<Integer, Attack> attackerAttacks = byAttacker.get(attackerCoordId);
+        return attackerAttacks == null ? Collections.emptyList() : attackerAttacks.values();
+    }
+
+
+    /**
+     * @return all existing attacks
+     */
+    public List<Attack> values() {
+        List<Attack> attacks = new ArrayList<>();
+        for (Map<Integer, Attack> attackerAttacks : byAttacker.values()) {
+            attacks.addAll(attackerAttacks.values());
+        }
+        return attacks;
+    }
+
+
+    public int size() {
+        int size = 0;
+        for (Map<Integer, Attack> attackerAttacks : byAttacker.values()) {
+            size += attackerAttacks.size();
+        }
+        return size;
+    }
+
+
+    public void remove(int attackerCoordId, int targetCoordId) {
+        Map<Integer, Attack> attackerAttacks = byAttacker.get(attackerCoordId);
+        if (attackerAttacks != null && attackerAttacks.remove(targetCoordId) != null) {
+            if (attackerAttacks.isEmpty()) byAttacker.remove(attackerCoordId);
+            Map<Integer, Attack> targetAttacks = byTarget.get(targetCoordId);
+            targetAttacks.remove(attackerCoordId);
+            if (targetAttacks.isEmpty()) byTarget.remove(targetCoordId);
+        }
+    }
+
+
+    /**
+     * Removes all attacks matching the filter.
+     */
+    public void removeIf(Predicate<Attack> filter) {
+        Iterator<Map<Integer, Attack>> attackerIterator = byAttacker.values().iterator();
+        while (attackerIterator.hasNext()) {
+            Map<Integer, Attack> attackerAttacks = attackerIterator.next();
+            Iterator<Attack> attackIterator = attackerAttacks.values().iterator();
+            while (attackIterator.hasNext()) {
+                Attack attack = attackIterator.next();
+                if (filter.test(attack)) {
+                    attackIterator.remove();
+                    int targetCoordId = attack.getTarget().getCoordId();
+                    Map<Integer, Attack> targetAttacks = byTarget.get(targetCoordId);
+                    targetAttacks.remove(attack.getAttacker().getCoordId());
+                    if (targetAttacks.isEmpty()) byTarget.remove(targetCoordId);
+                }
+            }
+            if (attackerAttacks.isEmpty()) attackerIterator.remove();
+        }
+    }
+
+
+    /**
+     * Registers a listener that is called with every attack created by getOrCreate.
+     */
+    public void addCreationListener(Consumer<Attack> listener) {
+        creationListeners.add(listener);
+    }
+}
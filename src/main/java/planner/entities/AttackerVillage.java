@@ -27,16 +27,17 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import planner.App;
+import planner.util.SendWindow;
 
 public class AttackerVillage extends Village {
 
     @Getter @Setter
     private IntegerProperty ts = new SimpleIntegerProperty(0);
 
-    @Getter @Setter
+    @Getter
     private double arteSpeed;
 
-    @Getter @Setter
+    @Getter
     private int heroBoots = 0;
 
     @Getter @Setter
@@ -54,12 +55,17 @@ public class AttackerVillage extends Village {
     @Getter @Setter
     private int chiefs;
 
-    @Getter @Setter
+    @Getter
     private String sendMin;
 
-    @Getter @Setter
+    @Getter
     private String sendMax;
 
+    /**
+     * Parsed from sendMin and sendMax when first needed.
+     */
+    private SendWindow sendWindow;
+
     @Getter @Setter
     private String comment;
 
@@ -75,11 +81,69 @@ public class AttackerVillage extends Village {
     @Getter @Setter
     private Image tribeTroops = null;
 
+    /**
+     * True if the saved settings (TS, artefact speed, hero boots, unit speed) have changed
+     * since they were last loaded or saved.
+     */
+    @Getter @Setter
+    private boolean dirty = false;
+
 
     @Builder
     public AttackerVillage(int coordId) {
 
         super(coordId);
+        trackChanges();
+    }
+
+
+    /**
+     * Creates an attacker from a village that is already in memory.
+     * @param village the participant's village
+     */
+    public AttackerVillage(Village village) {
+
+        super(village);
+        trackChanges();
+    }
+
+
+    private void trackChanges() {
+        ts.addListener((observable, oldValue, newValue) -> dirty = true);
+        unitSpeed.addListener((observable, oldValue, newValue) -> dirty = true);
+    }
+
+
+    public void setArteSpeed(double arteSpeed) {
+        if (this.arteSpeed != arteSpeed) dirty = true;
+        this.arteSpeed = arteSpeed;
+    }
+
+
+    public void setHeroBoots(int heroBoots) {
+        if (this.heroBoots != heroBoots) dirty = true;
+        this.heroBoots = heroBoots;
+    }
+
+
+    public void setSendMin(String sendMin) {
+        this.sendMin = sendMin;
+        this.sendWindow = null;
+    }
+
+
+    public void setSendMax(String sendMax) {
+        this.sendMax = sendMax;
+        this.sendWindow = null;
+    }
+
+
+    /**
+     * @return daily window in which this participant can send
+     */
+    public SendWindow getSendWindow() {
+        if (sendWindow == null) sendWindow = SendWindow.parse(sendMin, sendMax);
+        return sendWindow;
     }
 
 
@@ -379,7 +443,7 @@ public class AttackerVillage extends Village {
         attackerInfo.getChildren().add(new Label("Earliest send: " + getSendMin()));
         attackerInfo.getChildren().add(new Label("Latest send: " + getSendMax()));
         if (!plannedAttacks.isEmpty()) {
-            plannedAttacks.sort(Comparator.comparing(Attack::getSendingTime));
+            plannedAttacks.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
             attackerInfo.getChildren().add(new Label("Current sends:"));
         }
         for (Attack attack : plannedAttacks) {
@@ -1,28 +1,32 @@
 package planner.entities;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import javafx.beans.property.SimpleBooleanProperty;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import planner.App;
+import planner.Database;
 import planner.util.Converters;
+import planner.util.SendWindow;
+import planner.util.TravelTimeKernel;
+import planner.util.WorldDiff;
 
 /**
  * This class represents a whole planned operation in memory.
@@ -41,11 +45,28 @@ public class Operation {
     @Getter
     List<TargetVillage> targets = new ArrayList<>();
 
+    /**
+     * Targets by coordId and coordinates.
+     */
+    WorldIndex<TargetVillage> world;
+
     @Getter
     List<AttackerVillage> attackers = new ArrayList<>();
 
+    WorldIndex<AttackerVillage> attackerIndex;
+
+    /**
+     * Targets and participants by location, for neighbourhood queries.
+     */
+    SpatialIndex<TargetVillage> targetGrid;
+
+    SpatialIndex<AttackerVillage> attackerGrid;
+
+    /**
+     * Attacks that have been planned or picked; created on demand.
+     */
     @Getter
-    Map<Integer, Map<Integer, Attack>> attacks = new HashMap<>();
+    AttackStore attacks = new AttackStore(this::createAttack);
 
     @Getter @Setter
     Map<Integer, LocalDateTime> landTimes = new HashMap<>();
@@ -66,36 +87,169 @@ public class Operation {
     @Setter
     Set<String> enemyAlliances = new HashSet<>();
 
+    private int serverSize = 200;
+
+    private int serverSpeed = 1;
+
+    private final Set<Integer> listenedAttackers = new HashSet<>();
 
     /**
-     * Creates a new, empty operation. Gets world data and participants from database.
-     * TODO move database queries to the Database class.
+     * Milliseconds spent in each phase of building or loading this operation, in order.
+     */
+    @Getter
+    private final Map<String, Long> loadTimings = new LinkedHashMap<>();
+
+    /**
+     * True if the database holds this operation, so that saving only needs to write the changes.
+     */
+    private boolean saved = false;
+
+    /**
+     * Attacks removed from the plan since the last save.
+     */
+    private final List<Attack> removedAttacks = new ArrayList<>();
+
+    /**
+     * True if targets are loaded by alliance instead of the whole world at once.
+     */
+    @Getter
+    private boolean lazy = false;
+
+    private final Set<String> loadedAlliances = new HashSet<>();
+
+    /**
+     * Saved landing time shifts of targets that have not been loaded yet.
+     */
+    private final Map<Integer, Long> pendingShifts = new HashMap<>();
+
+    /**
+     * True if the landing times have been re-randomised since the last save,
+     * so that the saved shifts of targets that are not loaded are out of date.
+     */
+    private boolean shiftsRandomised = false;
+
+
+    /**
+     * Creates a new, empty operation with the whole world as targets.
+     * Gets world data and participants from database.
      */
     @Builder
     public Operation() {
 
-        this.loadVillageData();
-        this.assembleArteEffects();
+        this(false);
+    }
+
+
+    /**
+     * Creates a new, empty operation. Gets world data and participants from database.
+     * @param lazy if true, only the participants' villages are loaded at first,
+     *             and other targets are loaded by alliance with loadAlliances
+     */
+    public Operation(boolean lazy) {
+
+        this.lazy = lazy;
+        long start = System.nanoTime();
+        this.readWorldMeta();
+        this.loadAccountEffects();
+        if (!lazy) {
+            this.loadVillageData("", null);
+        }
+        start = this.recordTiming("world", start);
         this.assembleAttackers();
         this.computeLandingTimes(false);
-        this.createAttacks();
+        this.listenToAttackers();
+        this.recordTiming("participants", start);
+    }
+
+
+    /**
+     * Notes down the duration of a phase.
+     * @param phase name of the phase
+     * @param start System.nanoTime() at the start of the phase
+     * @return System.nanoTime() now, the start of the next phase
+     */
+    private long recordTiming(String phase, long start) {
+        long now = System.nanoTime();
+        loadTimings.put(phase, (now - start) / 1_000_000);
+        return now;
+    }
+
+
+    /**
+     * Reads the server size and speed, and sets up the village indexes for that map size.
+     */
+    private void readWorldMeta() {
+        try {
+            ResultSet rs = Database.query("SELECT * FROM world_meta");
+            if (rs != null && !rs.isClosed()) {
+                serverSize = rs.getInt("serversize");
+                serverSpeed = rs.getInt("serverspeed");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        world = new WorldIndex<>(serverSize);
+        attackerIndex = new WorldIndex<>(serverSize);
+        targetGrid = new SpatialIndex<>(serverSize);
+        attackerGrid = new SpatialIndex<>(serverSize);
+    }
+
+
+    /**
+     * Notes down the accounts with account-wide artefact effects.
+     */
+    private void loadAccountEffects() {
+        try {
+            ResultSet rs = Database.query("SELECT playerId, small_arte, large_arte, unique_arte " +
+                    "FROM artefacts JOIN x_world ON x_world.coordId = artefacts.coordId");
+            while (rs.next()) {
+                int small = rs.getInt("small_arte");
+                int large = rs.getInt("large_arte");
+                int unique = rs.getInt("unique_arte");
+                if (large == 5 || unique == 5) {
+                    scoutAccounts.add(rs.getInt("playerId"));
+                }
+                if (small == 11 || unique == 11) {
+                    foolAccounts.add(rs.getInt("playerId"));
+                }
+                if (large == 10 || unique == 10) {
+                    confuserAccounts.add(rs.getInt("playerId"));
+                }
+                if (large == 2 || unique == 2) {
+                    architectAccounts.add(rs.getInt("playerId"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
     }
 
 
     /**
      * Load village data from DB to memory.
      * Join with cap/off/artefact/etc information.
-     * TODO move database queries to the Database class.
+     * Villages are built straight from the joined rows in a single pass. Villages already loaded are skipped.
+     * @param where condition on x_world, e.g. "WHERE x_world.allyName = ?", or empty for the whole world
+     * @param param value for the condition, or null
+     * @return the new targets
      */
-    private void loadVillageData() {
+    private List<TargetVillage> loadVillageData(String where, Object param) {
+        List<TargetVillage> loaded = new ArrayList<>();
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            String sql = "SELECT * FROM x_world " +
+            String sql = "SELECT x_world.coordId, xCoord, yCoord, tribe, villageId, villageName, " +
+                    "playerId, playerName, allyId, allyName, population, " +
+                    "village_data.capital, offvillage, deffvillage, wwvillage, " +
+                    "small_arte, large_arte, unique_arte " +
+                    "FROM x_world " +
                     "LEFT JOIN village_data ON x_world.coordId=village_data.coordId " +
-                    "LEFT JOIN artefacts on x_world.coordId = artefacts.coordId";
-            ResultSet rs = conn.prepareStatement(sql).executeQuery();
+                    "LEFT JOIN artefacts on x_world.coordId = artefacts.coordId " +
+                    where;
+            PreparedStatement ps = Database.prepare(sql);
+            if (param != null) ps.setObject(1, param);
+            ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                TargetVillage t = new TargetVillage(rs.getInt("coordId"));
+                if (world.get(rs.getInt("coordId")) != null) continue;
+                TargetVillage t = new TargetVillage(rs);
                 if (rs.getInt("capital") == 1) t.setCapital(true);
                 if (rs.getInt("offvillage") == 1) t.setOffvillage(true);
                 if (rs.getInt("deffvillage") == 1) t.setDeffvillage(true);
@@ -112,33 +266,78 @@ public class Operation {
                 if (unique != 0) {
                     t.setArtefact(Converters.interpretArte(2, unique));
                 }
-                // Note down account-wide effects
-                if (large == 5 || unique == 5) {
-                    scoutAccounts.add(rs.getInt("playerId"));
-                }
-                if (small == 11 || unique == 11) {
-                    foolAccounts.add(rs.getInt("playerId"));
-                }
-                if (large == 10 || unique == 10) {
-                    confuserAccounts.add(rs.getInt("playerId"));
-                }
-                if (large == 2 || unique == 2) {
-                    architectAccounts.add(rs.getInt("playerId"));
-                }
-                targets.add(t);
+                loaded.add(t);
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        addTargets(loaded);
+        return loaded;
     }
 
 
     /**
-     * Checks the village artefact and possible account-wide effects.
+     * Adds villages to the targets, with their saved landing time shifts if there are any.
+     * Villages without a saved shift get a random one within the flex window,
+     * as if they had been there when the landing times were randomised.
      */
-    private void assembleArteEffects() {
-        for (TargetVillage target : targets) {
+    private void addTargets(List<TargetVillage> villages) {
+        for (TargetVillage target : villages) {
+            targets.add(target);
+            world.put(target);
+            targetGrid.add(target);
+            Long shift = pendingShifts.remove(target.getCoordId());
+            if (shift != null) {
+                target.setRandomShiftSeconds(shift);
+                target.setDirty(false);
+            } else if (randomShiftWindow > 0) {
+                target.setRandomShiftSeconds(randomShift());
+            }
+            landTimes.put(target.getCoordId(), defaultLandingTime.plusSeconds(target.getRandomShiftSeconds()));
+        }
+        assembleArteEffects(villages);
+    }
+
+
+    /**
+     * Returns the target, loading it from the database if this operation is lazy and it has not been loaded.
+     * @return target with the coordId or null if there is no such village
+     */
+    public TargetVillage getOrLoadTarget(int coordId) {
+        TargetVillage target = world.get(coordId);
+        if (target == null && lazy) {
+            List<TargetVillage> loaded = loadVillageData("WHERE x_world.coordId = ?", coordId);
+            if (!loaded.isEmpty()) target = loaded.get(0);
+        }
+        return target;
+    }
+
+
+    /**
+     * Loads the villages of the alliances as targets, if they have not been loaded yet.
+     * Does nothing if the whole world is loaded.
+     * @param alliances alliance names
+     * @return the new targets
+     */
+    public List<TargetVillage> loadAlliances(Set<String> alliances) {
+        List<TargetVillage> loaded = new ArrayList<>();
+        if (!lazy) return loaded;
+        for (String alliance : alliances) {
+            if (loadedAlliances.add(alliance)) {
+                loaded.addAll(loadVillageData("WHERE x_world.allyName = ?", alliance));
+            }
+        }
+        return loaded;
+    }
+
+
+    /**
+     * Checks the village artefact and possible account-wide effects for the given targets.
+     * @param villages targets to check
+     */
+    private void assembleArteEffects(Collection<TargetVillage> villages) {
+        for (TargetVillage target : villages) {
+            target.getArteEffects().clear();
             if (target.getArtefact().contains("Eyes") || scoutAccounts.contains(target.getPlayerId())) {
                 target.getArteEffects().add("Scout effect");
             }
@@ -161,12 +360,10 @@ public class Operation {
     private void assembleAttackers() {
 
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM participants").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM participants");
             while (rs.next()) {
                 matchAndAdd(rs);
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -179,80 +376,336 @@ public class Operation {
      */
     public void computeLandingTimes(boolean randomise) {
 
+        if (randomise) {
+            // Targets loaded later are randomised when they are loaded
+            pendingShifts.clear();
+            shiftsRandomised = true;
+        }
         for (TargetVillage target : targets) {
             long randomShiftSeconds = target.getRandomShiftSeconds();
             if (randomise) {
                 // Randomise landing times:
-                randomShiftSeconds = Math.round(randomShiftWindow * (Math.random() * 2 - 1));
+                randomShiftSeconds = randomShift();
             }
             target.setRandomShiftSeconds(randomShiftSeconds);
             LocalDateTime thisHit = defaultLandingTime.plusSeconds(randomShiftSeconds);
             landTimes.put(target.getCoordId(), thisHit);
         }
-        for (Map<Integer, Attack> attackMap : attacks.values()) {
-            for (Attack attack : attackMap.values()) {
-                attack.setLandingTime(landTimes.get(attack.getTarget().getCoordId()));
-            }
+        for (Attack attack : attacks.values()) {
+            attack.setLandingTime(landTimes.get(attack.getTarget().getCoordId()));
         }
     }
 
 
     /**
-     * Creates a new, empty map of attacks for each participant
-     * OR patches the existing one with new attackers added.
+     * @return random landing time shift within the flex window
      */
-    private void createAttacks() {
+    private long randomShift() {
+        return Math.round(randomShiftWindow * (Math.random() * 2 - 1));
+    }
 
-        int serverSize = 200;
-        int serverSpeed = 1;
 
-        // Get server size and speed
-        try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM world_meta").executeQuery();
-            if (rs != null && !rs.isClosed()) {
-                serverSize = rs.getInt("serversize");
-                serverSpeed = rs.getInt("serverspeed");
-            }
-            conn.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Makes the attacks of each participant follow their unit speed and TS level.
+     */
+    private void listenToAttackers() {
 
-        // Create the attack matrix
         for (AttackerVillage attacker : attackers) {
-            Map<Integer, Attack> attackerAttacks = new HashMap<>();
-            for (TargetVillage target : targets) {
-                // Waves needs to be 0 at this point to mark that the attack is not planned for now
-                Attack attack = new Attack(
-                        target,
-                        attacker,
-                        0,
-                        false,
-                        false,
-                        attacker.getUnitSpeed().get(),
-                        attacker.getTs().get(),
-                        landTimes.get(target.getCoordId()),
-                        0,
-                        serverSpeed,
-                        serverSize,
-                        false,
-                        false,
-                        new SimpleBooleanProperty(false));
+            if (listenedAttackers.add(attacker.getCoordId())) {
                 // Listen to updates regarding speed
-                attack.getAttacker().getUnitSpeed().addListener((observable, oldValue, newValue) -> {
-                    if (!newValue.equals(oldValue)) attack.setUnitSpeed(newValue.intValue());
+                attacker.getUnitSpeed().addListener((observable, oldValue, newValue) -> {
+                    if (!newValue.equals(oldValue)) {
+                        attacks.forAttacker(attacker.getCoordId()).forEach(a -> a.setUnitSpeed(newValue.intValue()));
+                    }
                 });
-                attack.getAttacker().getTs().addListener((observable, oldValue, newValue) -> {
-                    if (!newValue.equals(oldValue)) attack.setTs(newValue.intValue());
+                attacker.getTs().addListener((observable, oldValue, newValue) -> {
+                    if (!newValue.equals(oldValue)) {
+                        attacks.forAttacker(attacker.getCoordId()).forEach(a -> a.setTs(newValue.intValue()));
+                    }
                 });
-                attackerAttacks.put(target.getCoordId(), attack);
             }
-            // Don't overwrite planned attacks
-            if (!attacks.containsKey(attacker.getCoordId())) {
-                attacks.put(attacker.getCoordId(), attackerAttacks);
+        }
+    }
+
+
+    /**
+     * Creates an unplanned attack with the current settings of the attacker.
+     */
+    private Attack createAttack(AttackerVillage attacker, TargetVillage target) {
+        // Waves needs to be 0 at this point to mark that the attack is not planned for now
+        return new Attack(
+                target,
+                attacker,
+                0,
+                false,
+                false,
+                attacker.getUnitSpeed().get(),
+                attacker.getTs().get(),
+                landTimes.get(target.getCoordId()),
+                0,
+                serverSpeed,
+                serverSize,
+                false,
+                false,
+                new SimpleBooleanProperty(false));
+    }
+
+
+    /**
+     * Gives the attack for showing it as an option; the stored attack if there is one,
+     * otherwise a new attack that is not added to the operation.
+     * @param attacker attacking village
+     * @param target target village
+     * @return attack
+     */
+    public Attack previewAttack(AttackerVillage attacker, TargetVillage target) {
+        Attack attack = attacks.get(attacker.getCoordId(), target.getCoordId());
+        return attack != null ? attack : createAttack(attacker, target);
+    }
+
+
+    /**
+     * @return target with the coordId or null if it is not in this operation
+     */
+    public TargetVillage getTarget(int coordId) {
+        return world.get(coordId);
+    }
+
+
+    /**
+     * @return participating village with the coordId or null if there is none
+     */
+    public AttackerVillage getAttacker(int coordId) {
+        return attackerIndex.get(coordId);
+    }
+
+
+    /**
+     * Finds the participants that can land on the target at the time by sending inside their send window,
+     * with their current unit speed and TS and without hero boots.
+     * Each window is first turned into distance ranges, so only participants within the furthest range
+     * are looked up, and travel times are only computed for participants at a matching distance.
+     * @param target target village
+     * @param landingTime seconds from Converters.toEpochSecond
+     * @return attackers in the order of the participant list
+     */
+    public List<AttackerVillage> attackersInWindow(TargetVillage target, long landingTime) {
+        Map<AttackerVillage, double[][]> rangesByAttacker = new HashMap<>();
+        double furthest = -1;
+        for (AttackerVillage attacker : attackers) {
+            SendWindow window = attacker.getSendWindow();
+            if (window.isAlways()) continue;
+            double[][] ranges = distanceRanges(attacker, window, landingTime, landingTime);
+            rangesByAttacker.put(attacker, ranges);
+            for (double[] range : ranges) {
+                furthest = Math.max(furthest, range[1]);
+            }
+        }
+        Set<AttackerVillage> nearby = new HashSet<>(
+                attackerGrid.within(target.getXCoord(), target.getYCoord(), furthest));
+
+        List<AttackerVillage> inWindow = new ArrayList<>();
+        for (AttackerVillage attacker : attackers) {
+            SendWindow window = attacker.getSendWindow();
+            if (window.isAlways()) {
+                inWindow.add(attacker);
+                continue;
             }
+            if (!nearby.contains(attacker)) continue;
+            double distance = attackerGrid.distance(target.getXCoord(), target.getYCoord(), attacker);
+            if (!inRanges(rangesByAttacker.get(attacker), distance)) continue;
+            if (window.contains(landingTime - travelSeconds(attacker, distance))) inWindow.add(attacker);
+        }
+        return inWindow;
+    }
+
+
+    /**
+     * Finds the targets the participant can hit at their landing times by sending inside the send window,
+     * with the current unit speed and TS and without hero boots.
+     * The window is first turned into distance ranges, so only targets within the furthest range
+     * are looked up, and travel times are only computed for targets at a matching distance.
+     * @param attacker participating village
+     * @return targets in no particular order
+     */
+    public List<TargetVillage> reachableTargets(AttackerVillage attacker) {
+        List<TargetVillage> reachable = new ArrayList<>();
+        SendWindow window = attacker.getSendWindow();
+        if (window.isAlways()) {
+            reachable.addAll(targets);
+            return reachable;
         }
+        long earliestLanding = Long.MAX_VALUE;
+        long latestLanding = Long.MIN_VALUE;
+        for (LocalDateTime landingTime : landTimes.values()) {
+            long time = Converters.toEpochSecond(landingTime);
+            earliestLanding = Math.min(earliestLanding, time);
+            latestLanding = Math.max(latestLanding, time);
+        }
+        double[][] ranges = distanceRanges(attacker, window, earliestLanding, latestLanding);
+        double furthest = -1;
+        for (double[] range : ranges) {
+            furthest = Math.max(furthest, range[1]);
+        }
+        for (TargetVillage target : targetGrid.within(attacker.getXCoord(), attacker.getYCoord(), furthest)) {
+            double distance = targetGrid.distance(attacker.getXCoord(), attacker.getYCoord(), target);
+            if (!inRanges(ranges, distance)) continue;
+            long landingTime = Converters.toEpochSecond(landTimes.get(target.getCoordId()));
+            if (window.contains(landingTime - travelSeconds(attacker, distance))) reachable.add(target);
+        }
+        return reachable;
+    }
+
+
+    /**
+     * Suggests participants for the target: the closest ones that can land at the time
+     * by sending inside their send window.
+     * @param target target village
+     * @param landingTime seconds from Converters.toEpochSecond
+     * @param count amount of participants to suggest
+     * @return attackers, closest first
+     */
+    public List<AttackerVillage> suggestAttackers(TargetVillage target, long landingTime, int count) {
+        return attackerGrid.nearest(target.getXCoord(), target.getYCoord(), count, attacker -> {
+            SendWindow window = attacker.getSendWindow();
+            if (window.isAlways()) return true;
+            double distance = attackerGrid.distance(target.getXCoord(), target.getYCoord(), attacker);
+            return window.contains(landingTime - travelSeconds(attacker, distance));
+        });
+    }
+
+
+    /**
+     * @param center village at the center
+     * @param radius distance in squares
+     * @return targets at most the radius away from the village, in no particular order
+     */
+    public List<TargetVillage> targetsWithin(Village center, double radius) {
+        return targetGrid.within(center.getXCoord(), center.getYCoord(), radius);
+    }
+
+
+    /**
+     * @param center village to measure from
+     * @param count amount of targets to find
+     * @param filter targets to consider, e.g. capitals of an alliance
+     * @return the closest targets that pass the filter, closest first
+     */
+    public List<TargetVillage> nearestTargets(Village center, int count, Predicate<TargetVillage> filter) {
+        return targetGrid.nearest(center.getXCoord(), center.getYCoord(), count, filter);
+    }
+
+
+    /**
+     * @return travel time of the attacker's current settings over the distance, without hero boots
+     */
+    private long travelSeconds(AttackerVillage attacker, double distance) {
+        return TravelTimeKernel.travelSeconds(distance,
+                TravelTimeKernel.squaresPerSecond(attacker.getUnitSpeed().get(), serverSpeed, attacker.getArteSpeed()),
+                TravelTimeKernel.tsFactor(attacker.getTs().get(), 0));
+    }
+
+
+    /**
+     * Distances at which the attacker could send inside the window for some landing time in the range.
+     * Travel time grows with distance, so each opening of the window gives one range of distances.
+     * @param earliestLanding seconds from Converters.toEpochSecond
+     * @param latestLanding seconds from Converters.toEpochSecond
+     * @return inclusive ranges {min, max} with a margin for rounding
+     */
+    private double[][] distanceRanges(AttackerVillage attacker, SendWindow window,
+                                      long earliestLanding, long latestLanding) {
+        if (earliestLanding > latestLanding) return new double[0][];
+        double squaresPerSecond = TravelTimeKernel.squaresPerSecond(
+                attacker.getUnitSpeed().get(), serverSpeed, attacker.getArteSpeed());
+        double factor = TravelTimeKernel.tsFactor(attacker.getTs().get(), 0);
+        // Nothing on the map is further than the corner
+        long longestTravel = TravelTimeKernel.travelSeconds(
+                TravelTimeKernel.distance(0, 0, serverSize, serverSize, serverSize), squaresPerSecond, factor);
+
+        List<long[]> openings = window.occurrences(earliestLanding - longestTravel, latestLanding);
+        double[][] ranges = new double[openings.size()][];
+        for (int i = 0; i < openings.size(); i++) {
+            long shortest = Math.max(0, earliestLanding - openings.get(i)[1]);
+            long longest = latestLanding - openings.get(i)[0];
+            ranges[i] = new double[] {
+                    shortest <= 1 ? 0 : TravelTimeKernel.maxDistance(shortest - 1, squaresPerSecond, factor),
+                    TravelTimeKernel.maxDistance(longest + 1, squaresPerSecond, factor)
+            };
+        }
+        return ranges;
+    }
+
+
+    private static boolean inRanges(double[][] ranges, double distance) {
+        for (double[] range : ranges) {
+            if (distance >= range[0] && distance <= range[1]) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Patches this operation with the changes of a map.sql update, keeping the plan intact.
+     * Changed villages are updated in place, new villages become targets,
+     * and removed villages are dropped unless the plan still refers to them.
+     * @param diff changes to x_world
+     */
+    public void applyWorldDiff(WorldDiff diff) {
+
+        // Changed villages
+        List<TargetVillage> patched = new ArrayList<>();
+        for (TargetVillage village : diff.getChanged().values()) {
+            TargetVillage target = world.get(village.getCoordId());
+            if (target != null) {
+                target.updateFrom(village);
+                patched.add(target);
+            } else if (lazy && loadedAlliances.contains(village.getAllyName())) {
+                // Moved into an alliance that is shown; x_world is already up to date
+                loadVillageData("WHERE x_world.coordId = ?", village.getCoordId());
+            }
+            AttackerVillage attacker = attackerIndex.get(village.getCoordId());
+            if (attacker != null) {
+                attacker.updateFrom(village);
+                attacker.getUpdated().set(true);
+            }
+        }
+
+        // New villages
+        List<TargetVillage> added = new ArrayList<>();
+        for (TargetVillage village : diff.getInserted().values()) {
+            if (world.get(village.getCoordId()) != null) continue;
+            if (lazy && !loadedAlliances.contains(village.getAllyName())) continue;
+            added.add(village);
+        }
+        addTargets(added);
+        assembleArteEffects(patched);
+
+        // Removed villages; keep the ones still in the plan
+        Set<Integer> planned = new HashSet<>();
+        for (AttackerVillage attacker : attackers) {
+            for (Attack attack : attacker.getPlannedAttacks()) {
+                planned.add(attack.getTarget().getCoordId());
+            }
+        }
+        Set<Integer> removed = new HashSet<>();
+        for (int coordId : diff.getRemoved()) {
+            if (planned.contains(coordId) || attackerIndex.get(coordId) != null) {
+                System.out.println("Village " + coordId + " is no longer on the map but is kept in the plan");
+            } else {
+                TargetVillage target = world.remove(coordId);
+                if (target != null) {
+                    targetGrid.remove(target);
+                    removed.add(coordId);
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            targets.removeIf(target -> removed.contains(target.getCoordId()));
+            attacks.removeIf(attack -> removed.contains(attack.getTarget().getCoordId()));
+            landTimes.keySet().removeAll(removed);
+        }
+        System.out.println("Operation updated with map.sql changes: " + diff);
     }
 
 
@@ -262,6 +715,12 @@ public class Operation {
     public void update() {
         // TODO all kinds of stuff goes here.
         updateAlerts();
+        // Drop attacks that were created but never planned, or have been removed from the plan
+        attacks.removeIf(attack -> {
+            if (attack.getWaves() > 0) return false;
+            if (attack.isDirty()) removedAttacks.add(attack);
+            return true;
+        });
     }
 
     /**
@@ -289,11 +748,11 @@ public class Operation {
         // Sort lists and see if there are too close sends
         // TODO make the shortest possible interval a changeable setting
         for (List<Attack> attacksForPlayer : attacksPerPlayer.values()) {
-            attacksForPlayer.sort(Comparator.comparing(Attack::getSendingTime));
+            attacksForPlayer.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
             for (int i = 0; i < attacksForPlayer.size()-1; i++) {
-                LocalDateTime send1 = attacksForPlayer.get(i).getSendingTime();
-                LocalDateTime send2 = attacksForPlayer.get(i+1).getSendingTime();
-                if (ChronoUnit.SECONDS.between(send1, send2) < 30) {
+                long send1 = attacksForPlayer.get(i).getSendingEpochSecond();
+                long send2 = attacksForPlayer.get(i+1).getSendingEpochSecond();
+                if (send2 - send1 < 30) {
                     attacksForPlayer.get(i).setConflicting(true);
                     attacksForPlayer.get(i+1).setConflicting(true);
                     attacksForPlayer.get(i).getAttacker().setAlert(true);
@@ -313,14 +772,13 @@ public class Operation {
             }
         }
         for (List<Attack> attacksForTarget : attacksPerTarget.values()) {
-            attacksForTarget.sort(Comparator.comparing(Attack::getSendingTime));
+            attacksForTarget.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
             for (int i = 0; i < attacksForTarget.size()-1; i++) {
-                LocalDateTime send1 = attacksForTarget.get(i).getSendingTime();
-                LocalDateTime send2 = attacksForTarget.get(i+1).getSendingTime();
-                LocalDateTime land1 = attacksForTarget.get(i).getLandingTime();
-                LocalDateTime land2 = attacksForTarget.get(i+1).getLandingTime();
-                if (Math.abs(ChronoUnit.SECONDS.between(send1, send2)) < 1
-                        && Math.abs(ChronoUnit.SECONDS.between(land1, land2)) < 1) {
+                long send1 = attacksForTarget.get(i).getSendingEpochSecond();
+                long send2 = attacksForTarget.get(i+1).getSendingEpochSecond();
+                long land1 = attacksForTarget.get(i).getLandingEpochSecond();
+                long land2 = attacksForTarget.get(i+1).getLandingEpochSecond();
+                if (send1 == send2 && land1 == land2) {
                     attacksForTarget.get(i).setConflicting(true);
                     attacksForTarget.get(i+1).setConflicting(true);
                     attacksForTarget.get(i).getAttacker().setAlert(true);
@@ -343,26 +801,17 @@ public class Operation {
      */
     public void addNewAttackers() {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            ResultSet rs = conn.prepareStatement("SELECT * FROM participants").executeQuery();
+            ResultSet rs = Database.query("SELECT * FROM participants");
             while (rs.next()) {
                 // Check if this attacker already exists
-                boolean exists = false;
-                for (AttackerVillage av : attackers) {
-                    if (av.getXCoord() == rs.getInt("xCoord")
-                            && av.getYCoord() == rs.getInt("yCoord")) {
-                        exists = true;
-                    }
-                }
-                if (!exists) {
+                if (attackerIndex.get(rs.getInt("xCoord"), rs.getInt("yCoord")) == null) {
                     matchAndAdd(rs);
                 }
             }
-            conn.close();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        createAttacks();
+        listenToAttackers();
     }
 
 
@@ -376,22 +825,21 @@ public class Operation {
         // Assemble attacking villages
         // TODO Notify somewhere if the village is not found,
         //  this could mean wrong coordinates or deleted account.
-        for (Village v : targets) {
-            if (v.getXCoord() == rs.getInt("xCoord")
-                    && v.getYCoord() == rs.getInt("yCoord")) {
-                AttackerVillage attacker = new AttackerVillage(v.getCoordId());
-                attacker.getTs().set(rs.getInt("ts"));
-                attacker.setArteSpeed(rs.getDouble("speed"));
-                attacker.setOffString(rs.getString("offstring"));
-                attacker.setOffSize(rs.getInt("offsize"));
-                attacker.setCatas(rs.getInt("catas"));
-                attacker.setChiefs(rs.getInt("chiefs"));
-                attacker.setSendMin(rs.getString("sendmin"));
-                attacker.setSendMax(rs.getString("sendmax"));
-                attacker.setComment(rs.getString("comment"));
-                attackers.add(attacker);
-                break;
-            }
+        Village v = getOrLoadTarget(world.coordId(rs.getInt("xCoord"), rs.getInt("yCoord")));
+        if (v != null) {
+            AttackerVillage attacker = new AttackerVillage(v);
+            attacker.getTs().set(rs.getInt("ts"));
+            attacker.setArteSpeed(rs.getDouble("speed"));
+            attacker.setOffString(rs.getString("offstring"));
+            attacker.setOffSize(rs.getInt("offsize"));
+            attacker.setCatas(rs.getInt("catas"));
+            attacker.setChiefs(rs.getInt("chiefs"));
+            attacker.setSendMin(rs.getString("sendmin"));
+            attacker.setSendMax(rs.getString("sendmax"));
+            attacker.setComment(rs.getString("comment"));
+            attackers.add(attacker);
+            attackerIndex.put(attacker);
+            attackerGrid.add(attacker);
         }
     }
 
@@ -399,38 +847,56 @@ public class Operation {
     /**
      * Loads last saved operation from the database.
      * @return Operation object or null if there was a problem.
-     * TODO move DB operations to the Database class
      */
     public static Operation load() throws SQLException {
-        Operation operation = new Operation();
-        Connection conn = DriverManager.getConnection(App.DB);
+        return load(false);
+    }
+
+
+    /**
+     * Loads last saved operation from the database.
+     * @param lazy if true, only the participants and the targets of saved attacks are loaded at first
+     * @return Operation object or null if there was a problem.
+     */
+    public static Operation load(boolean lazy) throws SQLException {
+        Operation operation = new Operation(lazy);
         try {
+            long start = System.nanoTime();
             // Get landing time and flex seconds
-            ResultSet rs1 = conn.prepareStatement("SELECT * FROM operation_meta").executeQuery();
+            int flexSeconds = 0;
+            ResultSet rs1 = Database.query("SELECT * FROM operation_meta");
             while (rs1.next()) {
                 operation.defaultLandingTime = LocalDateTime.parse(
                         rs1.getString("defaultLandingTime"), App.FULL_DATE_TIME);
-                operation.randomShiftWindow = rs1.getInt("flex_seconds");
+                flexSeconds = rs1.getInt("flex_seconds");
             }
             // Get attacker info
-            ResultSet rs2 = conn.prepareStatement("SELECT * FROM attacker_info").executeQuery();
+            ResultSet rs2 = Database.query("SELECT * FROM attacker_info");
             while (rs2.next()) {
-                for (AttackerVillage attackerVillage : operation.getAttackers()) {
-                    if (attackerVillage.getCoordId() == rs2.getInt("coordId")) {
-                        attackerVillage.getTs().set(rs2.getInt("tsLvl"));
-                        attackerVillage.setArteSpeed(rs2.getDouble("arteSpeed"));
-                        attackerVillage.setHeroBoots(rs2.getInt("heroBoots"));
-                        attackerVillage.getUnitSpeed().set(rs2.getInt("unitSpeed"));
-                        break;
-                    }
+                AttackerVillage attackerVillage = operation.getAttacker(rs2.getInt("coordId"));
+                if (attackerVillage != null) {
+                    attackerVillage.getTs().set(rs2.getInt("tsLvl"));
+                    attackerVillage.setArteSpeed(rs2.getDouble("arteSpeed"));
+                    attackerVillage.setHeroBoots(rs2.getInt("heroBoots"));
+                    attackerVillage.getUnitSpeed().set(rs2.getInt("unitSpeed"));
                 }
             }
+            start = operation.recordTiming("attacker info", start);
             // Get attack data. Setting landing time here is redundant.
-            ResultSet rs3 = conn.prepareStatement("SELECT * FROM attacks").executeQuery();
+            if (lazy) {
+                operation.loadVillageData("WHERE x_world.coordId IN (SELECT t_coordId FROM attacks)", null);
+            }
+            ResultSet rs3 = Database.query("SELECT * FROM attacks");
             while (rs3.next()) {
                 int a_coordId = rs3.getInt("a_coordId");
                 int t_coordId = rs3.getInt("t_coordId");
-                Attack attack = operation.getAttacks().get(a_coordId).get(t_coordId);
+                AttackerVillage attacker = operation.getAttacker(a_coordId);
+                TargetVillage target = operation.getOrLoadTarget(t_coordId);
+                if (attacker == null || target == null) {
+                    System.out.println("Skipping saved attack " + a_coordId + " -> " + t_coordId + ", village not found");
+                    continue;
+                }
+                Attack attack = operation.getAttacks().getOrCreate(attacker, target);
                 attack.setWaves(rs3.getInt("waves"));
                 attack.setReal(rs3.getInt("realTgt") == 1);
                 attack.setConq(rs3.getInt("conq") == 1);
@@ -441,33 +907,29 @@ public class Operation {
                 attack.setServerSpeed(rs3.getInt("server_speed"));
                 attack.setServerSize(rs3.getInt("server_size"));
                 if (attack.getWaves() > 0) {
-                    for (AttackerVillage attackerVillage : operation.getAttackers()) {
-                        if (attackerVillage.getCoordId() == a_coordId) {
-                            attackerVillage.getPlannedAttacks().add(attack);
-                        }
-                    }
+                    attacker.getPlannedAttacks().add(attack);
                 }
             }
-            // Get target specific landing time shifts
-            Map<Integer, Long> landingTimeShifts = new HashMap<>();
-            ResultSet rs4 = conn.prepareStatement("SELECT * FROM target_info").executeQuery();
+            start = operation.recordTiming("attacks", start);
+            // Get target specific landing time shifts. Targets without a saved shift keep 0.
+            ResultSet rs4 = Database.query("SELECT * FROM target_info");
             while (rs4.next()) {
-                landingTimeShifts.put(
-                        rs4.getInt("coordId"),
-                        rs4.getLong("randomShiftSeconds"));
-            }
-            for (TargetVillage targetVillage : operation.getTargets()) {
-                if (!landingTimeShifts.containsKey(targetVillage.getCoordId())) {
-                    landingTimeShifts.put(targetVillage.getCoordId(), 0L);
+                TargetVillage targetVillage = operation.getTarget(rs4.getInt("coordId"));
+                if (targetVillage != null) {
+                    targetVillage.setRandomShiftSeconds(rs4.getLong("randomShiftSeconds"));
+                } else if (lazy) {
+                    operation.pendingShifts.put(rs4.getInt("coordId"), rs4.getLong("randomShiftSeconds"));
                 }
-                targetVillage.setRandomShiftSeconds(landingTimeShifts.get(targetVillage.getCoordId()));
             }
+            // The flex window is set only now so that the saved targets keep their saved shifts,
+            // and only villages loaded later get random ones
+            operation.randomShiftWindow = flexSeconds;
             // Compute landing times for all attacks
             operation.computeLandingTimes(false);
-            conn.close();
+            operation.recordTiming("target shifts", start);
+            operation.markSaved();
         } catch (Exception e) {
             e.printStackTrace();
-            conn.close();
             return null;
         }
         return operation;
@@ -475,66 +937,127 @@ public class Operation {
 
 
     /**
-     * Saves this operation to the database. Overwrites anything that was there already.
+     * Saves this operation to the database.
+     * A new operation overwrites anything that was there already; after that only changes are written.
+     * Everything is written in one transaction.
      * @return True if the save was successful
-     * TODO move DB operations to the Database class
      */
     public boolean save() {
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            // Save metadata; landing time, flex seconds
-            conn.prepareStatement("DELETE FROM operation_meta").execute();
-            String sql = "INSERT INTO operation_meta VALUES ("
-                    + randomShiftWindow + ",'"
-                    + defaultLandingTime.format(App.FULL_DATE_TIME) + "')";
-            conn.prepareStatement(sql).execute();
-            // Save attack and attacker data
-            conn.prepareStatement("DELETE FROM attacks").execute();
-            conn.prepareStatement("DELETE FROM attacker_info").execute();
-            String attackInsert = "INSERT INTO attacks VALUES(?,?,?,?,?,?,?,?,?,?,?,?)";
-            PreparedStatement attackInserts = conn.prepareStatement(attackInsert);
-            for (AttackerVillage attacker : attackers) {
-                conn.prepareStatement("INSERT INTO attacker_info VALUES ("
-                        + attacker.getCoordId() + ","
-                        + attacker.getTs().get() + "," +
-                        attacker.getArteSpeed() + "," +
-                        attacker.getHeroBoots() + "," +
-                        attacker.getUnitSpeed().get() + ")"
-                ).execute();
-                for (Attack attack : attacker.getPlannedAttacks()) {
-                    int a_coordId = attack.getAttacker().getCoordId();
-                    int t_coordId = attack.getTarget().getCoordId();
-                    attackInserts.setInt(1, a_coordId);
-                    attackInserts.setInt(2, t_coordId);
-                    attackInserts.setString(3, landTimes.get(t_coordId).format(App.FULL_DATE_TIME));
-                    attackInserts.setInt(4, attack.getWaves());
-                    attackInserts.setInt(5, (attack.isReal() ? 1 : 0));
-                    attackInserts.setInt(6, (attack.isConq() ? 1 : 0));
-                    attackInserts.setInt(7, attack.getLandingTimeShift());
-                    attackInserts.setInt(8, attack.getUnitSpeed());
-                    attackInserts.setInt(9, attack.getServerSpeed());
-                    attackInserts.setInt(10, attack.getServerSize());
-                    attackInserts.setInt(11, (attack.isWithHero() ? 1 : 0));
-                    attackInserts.setInt(12, attack.getTs());
-                    attackInserts.addBatch();
+            Database.transaction(() -> {
+                // Save metadata; landing time, flex seconds
+                Database.prepare("DELETE FROM operation_meta").execute();
+                PreparedStatement meta = Database.prepare("INSERT INTO operation_meta VALUES (?,?)");
+                meta.setInt(1, randomShiftWindow);
+                meta.setString(2, defaultLandingTime.format(App.FULL_DATE_TIME));
+                meta.execute();
+                if (!saved) {
+                    Database.prepare("DELETE FROM attacks").execute();
+                    Database.prepare("DELETE FROM attacker_info").execute();
+                    Database.prepare("DELETE FROM target_info").execute();
                 }
-            }
-            attackInserts.executeBatch();
-            // Save target specific landing time shifts
-            conn.prepareStatement("DELETE FROM target_info").execute();
-            String targetInsert = "INSERT INTO target_info VALUES(?,?)";
-            PreparedStatement targetInserts = conn.prepareStatement(targetInsert);
-            for (TargetVillage targetVillage : targets) {
-                targetInserts.setInt(1, targetVillage.getCoordId());
-                targetInserts.setLong(2, targetVillage.getRandomShiftSeconds());
-                targetInserts.addBatch();
-            }
-            targetInserts.executeBatch();
-            conn.close();
+                // Save attacker data
+                PreparedStatement attackerUpserts = Database.prepare(
+                        "INSERT INTO attacker_info VALUES (?,?,?,?,?) ON CONFLICT(coordId) DO UPDATE SET " +
+                        "tsLvl=excluded.tsLvl, arteSpeed=excluded.arteSpeed, " +
+                        "heroBoots=excluded.heroBoots, unitSpeed=excluded.unitSpeed");
+                for (AttackerVillage attacker : attackers) {
+                    if (saved && !attacker.isDirty()) continue;
+                    attackerUpserts.setInt(1, attacker.getCoordId());
+                    attackerUpserts.setInt(2, attacker.getTs().get());
+                    attackerUpserts.setDouble(3, attacker.getArteSpeed());
+                    attackerUpserts.setInt(4, attacker.getHeroBoots());
+                    attackerUpserts.setInt(5, attacker.getUnitSpeed().get());
+                    attackerUpserts.addBatch();
+                }
+                attackerUpserts.executeBatch();
+                // Save target specific landing time shifts, only the non-zero ones are stored
+                PreparedStatement targetUpserts = Database.prepare(
+                        "INSERT INTO target_info VALUES(?,?) ON CONFLICT(coordId) DO UPDATE SET " +
+                        "randomShiftSeconds=excluded.randomShiftSeconds");
+                PreparedStatement targetDeletes = Database.prepare("DELETE FROM target_info WHERE coordId=?");
+                // After a re-randomise, the saved shifts of targets that are not loaded are dropped
+                // and all loaded targets are written again
+                boolean allShifts = !saved || shiftsRandomised;
+                if (saved && shiftsRandomised) Database.prepare("DELETE FROM target_info").execute();
+                Set<Attack> changedAttacks = new HashSet<>();
+                for (TargetVillage targetVillage : targets) {
+                    if (!allShifts && !targetVillage.isDirty()) continue;
+                    if (targetVillage.getRandomShiftSeconds() != 0) {
+                        targetUpserts.setInt(1, targetVillage.getCoordId());
+                        targetUpserts.setLong(2, targetVillage.getRandomShiftSeconds());
+                        targetUpserts.addBatch();
+                    } else if (!allShifts) {
+                        targetDeletes.setInt(1, targetVillage.getCoordId());
+                        targetDeletes.addBatch();
+                    }
+                    // The landing time of the attacks on this target has changed
+                    changedAttacks.addAll(attacks.forTarget(targetVillage.getCoordId()));
+                }
+                targetUpserts.executeBatch();
+                targetDeletes.executeBatch();
+                // Save attack data
+                PreparedStatement attackDeletes = Database.prepare(
+                        "DELETE FROM attacks WHERE a_coordId=? AND t_coordId=?");
+                PreparedStatement attackUpserts = Database.prepare(
+                        "INSERT INTO attacks VALUES(?,?,?,?,?,?,?,?,?,?,?,?) " +
+                        "ON CONFLICT(a_coordId, t_coordId) DO UPDATE SET " +
+                        "landing_time=excluded.landing_time, waves=excluded.waves, realTgt=excluded.realTgt, " +
+                        "conq=excluded.conq, time_shift=excluded.time_shift, unit_speed=excluded.unit_speed, " +
+                        "server_speed=excluded.server_speed, server_size=excluded.server_size, " +
+                        "withHero=excluded.withHero, ts=excluded.ts");
+                for (Attack attack : removedAttacks) {
+                    attackDeletes.setInt(1, attack.getAttacker().getCoordId());
+                    attackDeletes.setInt(2, attack.getTarget().getCoordId());
+                    attackDeletes.addBatch();
+                }
+                attackDeletes.executeBatch();
+                for (Attack attack : attacks.values()) {
+                    if (!saved || attack.isDirty() || changedAttacks.contains(attack)) {
+                        int a_coordId = attack.getAttacker().getCoordId();
+                        int t_coordId = attack.getTarget().getCoordId();
+                        if (attack.getWaves() == 0) {
+                            attackDeletes.setInt(1, a_coordId);
+                            attackDeletes.setInt(2, t_coordId);
+                            attackDeletes.addBatch();
+                            continue;
+                        }
+                        attackUpserts.setInt(1, a_coordId);
+                        attackUpserts.setInt(2, t_coordId);
+                        attackUpserts.setString(3, landTimes.get(t_coordId).format(App.FULL_DATE_TIME));
+                        attackUpserts.setInt(4, attack.getWaves());
+                        attackUpserts.setInt(5, (attack.isReal() ? 1 : 0));
+                        attackUpserts.setInt(6, (attack.isConq() ? 1 : 0));
+                        attackUpserts.setInt(7, attack.getLandingTimeShift());
+                        attackUpserts.setInt(8, attack.getUnitSpeed());
+                        attackUpserts.setInt(9, attack.getServerSpeed());
+                        attackUpserts.setInt(10, attack.getServerSize());
+                        attackUpserts.setInt(11, (attack.isWithHero() ? 1 : 0));
+                        attackUpserts.setInt(12, attack.getTs());
+                        attackUpserts.addBatch();
+                    }
+                }
+                attackDeletes.executeBatch();
+                attackUpserts.executeBatch();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
+        markSaved();
         return true;
     }
+
+
+    /**
+     * Marks everything as saved, so that the next save only writes what changes after this.
+     */
+    private void markSaved() {
+        saved = true;
+        shiftsRandomised = false;
+        removedAttacks.clear();
+        for (Attack attack : attacks.values()) attack.setDirty(false);
+        for (AttackerVillage attacker : attackers) attacker.setDirty(false);
+        for (TargetVillage target : targets) target.setDirty(false);
+    }
 }
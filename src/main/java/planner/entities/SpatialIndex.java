@@ -0,0 +1,196 @@
+package planner.entities;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import planner.util.TravelTimeKernel;
+
+/**
+ * Uniform grid over the map for neighbourhood queries, such as villages within some squares
+ * of a village or the closest villages matching a filter.
+ * The map wraps around at the edges like the game map, so cells at opposite edges are neighbours.
+ * Distances are the same as in travel time calculation.
+ * @param <V> type of the indexed villages
+ */
+public class SpatialIndex<V extends Village> {
+
+    private static final int DEFAULT_CELL_SIZE = 10;
+
+    private final int serverSize;
+
+    private final int width;
+
+    private final int cellSize;
+
+    /**
+     * Cells per side; the last cell is smaller if the map width is not a multiple of the cell size.
+     */
+    private final int cells;
+
+    private final List<List<V>> grid;
+
+    private int size = 0;
+
+
+    /**
+     * @param serverSize e.g. 200 for 401x401 map, 400 for 801x801 map
+     */
+    public SpatialIndex(int serverSize) {
+        this(serverSize, DEFAULT_CELL_SIZE);
+    }
+
+
+    /**
+     * @param serverSize e.g. 200 for 401x401 map, 400 for 801x801 map
+     * @param cellSize cell side in squares
+     */
+    public SpatialIndex(int serverSize, int cellSize) {
+        this.serverSize = serverSize;
+        this.width = 2 * serverSize + 1;
+        this.cellSize = cellSize;
+        this.cells = (width + cellSize - 1) / cellSize;
+        this.grid = new ArrayList<>(cells * cells);
+        for (int i = 0; i < cells * cells; i++) {
+            grid.add(null);
+        }
+    }
+
+
+    /**
+     * @return cell of the x or y coordinate on one axis
+     */
+    private int cellOf(int coordinate) {
+        return Math.floorMod(coordinate + serverSize, width) / cellSize;
+    }
+
+
+    public void add(V village) {
+        int cell = cellOf(village.getYCoord()) * cells + cellOf(village.getXCoord());
+        if (grid.get(cell) == null) grid.set(cell, new ArrayList<>());
+        grid.get(cell).add(village);
+        size++;
+    }
+
+
+    /**
+     * @return false if the village was not in the index
+     */
+    public boolean remove(V village) {
+        List<V> cell = grid.get(cellOf(village.getYCoord()) * cells + cellOf(village.getXCoord()));
+        if (cell == null || !cell.remove(village)) return false;
+        size--;
+        return true;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @return distance from the coordinates to the village
+     */
+    public double distance(int x, int y, Village village) {
+        return TravelTimeKernel.distance(x, y, village.getXCoord(), village.getYCoord(), serverSize);
+    }
+
+
+    /**
+     * Finds the villages at most the radius away from the coordinates.
+     * @return villages in no particular order
+     */
+    public List<V> within(int x, int y, double radius) {
+        List<V> found = new ArrayList<>();
+        if (radius < 0) return found;
+        int reach = (int) Math.ceil(radius);
+        for (int cellY : axisCells(y, reach)) {
+            for (int cellX : axisCells(x, reach)) {
+                List<V> cell = grid.get(cellY * cells + cellX);
+                if (cell == null) continue;
+                for (V village : cell) {
+                    if (distance(x, y, village) <= radius) found.add(village);
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Finds the closest villages that pass the filter, searching rings of cells outwards from the coordinates.
+     * @param k amount of villages to find
+     * @param filter villages to consider
+     * @return at most k villages, closest first
+     */
+    public List<V> nearest(int x, int y, int k, Predicate<? super V> filter) {
+        List<V> found = new ArrayList<>();
+        if (k <= 0) return found;
+        // Furthest first, so the head is the one to drop when a closer village is found
+        PriorityQueue<V> closest = new PriorityQueue<>(
+                Comparator.comparingDouble((V village) -> distance(x, y, village)).reversed());
+        boolean[] visited = new boolean[cells * cells];
+        int centerX = cellOf(x);
+        int centerY = cellOf(y);
+        for (int ring = 0; ring <= cells / 2 + 1; ring++) {
+            // Cells in this ring are at least this far; the smaller cell at the edge may be one cell closer
+            double ringDistance = Math.max(0, (ring - 2) * cellSize);
+            if (closest.size() == k && ringDistance > distance(x, y, closest.peek())) break;
+            for (int dy = -ring; dy <= ring; dy++) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    if (Math.abs(dx) != ring && Math.abs(dy) != ring) continue;
+                    int cell = Math.floorMod(centerY + dy, cells) * cells + Math.floorMod(centerX + dx, cells);
+                    if (visited[cell]) continue;
+                    visited[cell] = true;
+                    List<V> villages = grid.get(cell);
+                    if (villages == null) continue;
+                    for (V village : villages) {
+                        if (!filter.test(village)) continue;
+                        if (closest.size() < k) {
+                            closest.add(village);
+                        } else if (distance(x, y, village) < distance(x, y, closest.peek())) {
+                            closest.poll();
+                            closest.add(village);
+                        }
+                    }
+                }
+            }
+        }
+        found.addAll(closest);
+        found.sort(Comparator.comparingDouble(village -> distance(x, y, village)));
+        return found;
+    }
+
+
+    /**
+     * Cells on one axis that overlap the range from coordinate - reach to coordinate + reach,
+     * wrapping around the edge of the map.
+     */
+    private int[] axisCells(int coordinate, int reach) {
+        if (2 * reach + 1 >= width) {
+            int[] all = new int[cells];
+            for (int i = 0; i < cells; i++) all[i] = i;
+            return all;
+        }
+        int first = cellOf(coordinate - reach);
+        int last = cellOf(coordinate + reach);
+        boolean wraps = Math.floorMod(coordinate - reach + serverSize, width)
+                > Math.floorMod(coordinate + reach + serverSize, width);
+        int count;
+        if (!wraps) {
+            count = last - first + 1;
+        } else {
+            // From the first cell to the edge, and from the other edge to the last cell
+            count = first > last ? cells - first + last + 1 : cells;
+            if (first <= last) first = 0;
+        }
+        int[] axis = new int[count];
+        for (int i = 0; i < count; i++) {
+            axis[i] = (first + i) % cells;
+        }
+        return axis;
+    }
+}
@@ -1,5 +1,7 @@
 package planner.entities;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,12 +29,34 @@ public class TargetVillage extends Village {
     @Getter @Setter
     private List<String> arteEffects = new ArrayList<>();
 
-    @Getter @Setter
+    @Getter
     private long randomShiftSeconds = 0L;
 
+    /**
+     * True if the landing time shift has changed since it was last loaded or saved.
+     */
+    @Getter @Setter
+    private boolean dirty = false;
+
 
     @Builder
     public TargetVillage(int coordId) {
         super(coordId);
     }
+
+
+    /**
+     * Builds the target from a row of the joined world query.
+     * @param rs ResultSet positioned on a row containing the x_world columns
+     * @throws SQLException if a column is missing
+     */
+    public TargetVillage(ResultSet rs) throws SQLException {
+        super(rs);
+    }
+
+
+    public void setRandomShiftSeconds(long randomShiftSeconds) {
+        if (this.randomShiftSeconds != randomShiftSeconds) dirty = true;
+        this.randomShiftSeconds = randomShiftSeconds;
+    }
 }
@@ -1,12 +1,11 @@
 package planner.entities;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import lombok.Getter;
-import planner.App;
+import planner.Database;
 
 public abstract class Village {
 
@@ -46,25 +45,69 @@ public abstract class Village {
     public Village(int coordId) {
         this.coordId = coordId;
         try {
-            Connection conn = DriverManager.getConnection(App.DB);
-            String sql = "SELECT * FROM x_world WHERE coordId=" + coordId;
-            ResultSet rs = conn.prepareStatement(sql).executeQuery();
-            this.xCoord = rs.getInt("xCoord");
-            this.yCoord = rs.getInt("yCoord");
-            this.tribe = rs.getInt("tribe");
-            this.villageId = rs.getInt("villageId");
-            this.villageName = rs.getString("villageName");
-            this.playerId = rs.getInt("playerId");
-            this.playerName = rs.getString("playerName");
-            this.allyId = rs.getInt("allyId");
-            this.allyName = rs.getString("allyName");
-            this.population = rs.getInt("population");
-            conn.close();
+            PreparedStatement ps = Database.prepare("SELECT * FROM x_world WHERE coordId=?");
+            ps.setInt(1, coordId);
+            ResultSet rs = ps.executeQuery();
+            this.readRow(rs);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+
+    /**
+     * Builds the village directly from the current row of a query over x_world,
+     * without going back to the database.
+     * @param rs ResultSet positioned on a row containing the x_world columns
+     * @throws SQLException if a column is missing
+     */
+    protected Village(ResultSet rs) throws SQLException {
+        this.coordId = rs.getInt("coordId");
+        this.readRow(rs);
+    }
+
+
+    /**
+     * Copies the world data of another village.
+     * @param village village to copy
+     */
+    protected Village(Village village) {
+        this.coordId = village.coordId;
+        this.updateFrom(village);
+    }
+
+
+    /**
+     * Takes the world data of a newer version of the same village, e.g. after a map.sql update.
+     * @param village village with the new data
+     */
+    public final void updateFrom(Village village) {
+        this.xCoord = village.xCoord;
+        this.yCoord = village.yCoord;
+        this.tribe = village.tribe;
+        this.villageId = village.villageId;
+        this.villageName = village.villageName;
+        this.playerId = village.playerId;
+        this.playerName = village.playerName;
+        this.allyId = village.allyId;
+        this.allyName = village.allyName;
+        this.population = village.population;
+    }
+
+
+    private void readRow(ResultSet rs) throws SQLException {
+        this.xCoord = rs.getInt("xCoord");
+        this.yCoord = rs.getInt("yCoord");
+        this.tribe = rs.getInt("tribe");
+        this.villageId = rs.getInt("villageId");
+        this.villageName = rs.getString("villageName");
+        this.playerId = rs.getInt("playerId");
+        this.playerName = rs.getString("playerName");
+        this.allyId = rs.getInt("allyId");
+        this.allyName = rs.getString("allyName");
+        this.population = rs.getInt("population");
+    }
+
     public String getCoords() {
         return this.xCoord + "|" + this.yCoord;
     }
@@ -0,0 +1,89 @@
+package planner.entities;
+
+/**
+ * Dense index of the villages on the map, by coordId and by coordinates.
+ * Backed by an array with one slot per map square, so lookups are constant time.
+ * @param <V> type of the indexed villages
+ */
+public class WorldIndex<V extends Village> {
+
+    private final int serverSize;
+
+    private final int width;
+
+    private final Village[] villages;
+
+    private int size = 0;
+
+
+    /**
+     * @param serverSize e.g. 200 for 401x401 map, 400 for 801x801 map
+     */
+    public WorldIndex(int serverSize) {
+        this.serverSize = serverSize;
+        this.width = 2 * serverSize + 1;
+        this.villages = new Village[width * width];
+    }
+
+
+    /**
+     * Travian T4 coordinate id; 1 at the top left corner, growing to the right and down.
+     * @return coordId or -1 if the coordinates are outside the map
+     */
+    public int coordId(int x, int y) {
+        if (x < -serverSize || x > serverSize || y < -serverSize || y > serverSize) return -1;
+        return (serverSize - y) * width + (x + serverSize) + 1;
+    }
+
+
+    /**
+     * @return the village or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int coordId) {
+        if (coordId < 1 || coordId > villages.length) return null;
+        return (V) villages[coordId - 1];
+    }
+
+
+    /**
+     * @return the village at the coordinates or null if there is none
+     */
+    public V get(int x, int y) {
+        return get(coordId(x, y));
+    }
+
+
+    /**
+     * Adds the village, replacing any village with the same coordId.
+     * @return false if the village is outside the map
+     */
+    public boolean put(V village) {
+        int coordId = village.getCoordId();
+        if (coordId < 1 || coordId > villages.length) {
+            System.out.println("Village " + coordId + " is outside of a map of size " + serverSize);
+            return false;
+        }
+        if (villages[coordId - 1] == null) size++;
+        villages[coordId - 1] = village;
+        return true;
+    }
+
+
+    /**
+     * @return the removed village or null if there was none
+     */
+    public V remove(int coordId) {
+        V village = get(coordId);
+        if (village != null) {
+            villages[coordId - 1] = null;
+            size--;
+        }
+        return village;
+    }
+
+
+    public int size() {
+        return size;
+    }
+}
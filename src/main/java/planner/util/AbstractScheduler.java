@@ -0,0 +1,410 @@
+package planner.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import planner.entities.Operation;
+
+/**
+ * Fitness function and chromosome handling shared by the scheduler engines.
+ * A chromosome holds the landing time shifts of the targets by target ordinal in the snapshot of the run.
+ */
+public abstract class AbstractScheduler implements Scheduler {
+
+    protected final Operation operation;
+
+    /**
+     * Interval below which the value is zero, in seconds.
+     */
+    private static final long DEFAULT_CUTOFF = 30L;
+
+    /**
+     * Optimal interval without waves, in seconds.
+     */
+    private static final long BASE_INTERVAL = 60L;
+
+    private static final long DEFAULT_SECONDS_PER_WAVE = 5L;
+
+    @Getter
+    protected double bestValue;
+
+    @Getter
+    protected double baseValueRatio;
+
+    @Getter
+    private long cutoff = DEFAULT_CUTOFF;
+
+    /**
+     * Seconds added to the optimal interval per wave to set.
+     */
+    @Getter
+    private long secondsPerWave = DEFAULT_SECONDS_PER_WAVE;
+
+    /**
+     * Planned attacks of the operation when the run started.
+     */
+    protected ScheduleProblem problem;
+
+    /**
+     * Values of the intervals of the current snapshot before the cutoff, at interval + waveOffsets[waves].
+     * Waves only move the optimal interval, so one row serves all of them.
+     * Covers every interval between two sends of a player with landing time shifts inside the flex window.
+     */
+    private double[] valueTable = new double[0];
+    private int[] waveOffsets = new int[0];
+    private int tableIntervals = 0;
+    private int tableWaves = -1;
+
+    /**
+     * 0 for intervals below the cutoff and 1 at the cutoff, indexed by the interval up to the cutoff.
+     */
+    private double[] cutoffMask = new double[] {1.0};
+
+    /**
+     * Fitness at which a run stops early.
+     */
+    @Getter
+    @Setter
+    private double targetFitness = Double.POSITIVE_INFINITY;
+
+    /**
+     * Reusable send buffers for evaluating chromosomes, one per evaluating thread.
+     */
+    private final ThreadLocal<long[]> scratch = ThreadLocal.withInitial(() -> new long[0]);
+
+    @Getter
+    protected DoubleProperty progress = new SimpleDoubleProperty(0.0);
+
+
+    /**
+     * Parameters determine the fitness function
+     * and can be used to weigh long send intervals to taste.
+     * The higher the bestValue, the slower the value of the interval
+     * drops when it gets longer.
+     * baseValueRatio of 0.0 means that long intervals are highly penalised,
+     * baseValueRatio of 1.0 means that long intervals are as good as the
+     * optimal ones.
+     * @param operation operation to be scheduled
+     * @param bestValue value for an optimal interval
+     * @param baseValueRatio proportion of the best value
+     */
+    protected AbstractScheduler(Operation operation, double bestValue, double baseValueRatio) {
+        this.operation = operation;
+        this.bestValue = bestValue;
+        this.baseValueRatio = baseValueRatio;
+    }
+
+
+    @Override
+    public Map<Integer, Long> schedule() throws IllegalStateException {
+        return schedule(null);
+    }
+
+
+    @Override
+    public Map<Integer, Long> schedule(Duration budget) throws IllegalStateException {
+        return schedule(new ScheduleProblem(operation), budget);
+    }
+
+
+    /**
+     * @return landing time shift limited to the flex window
+     */
+    protected int clamp(int shift) {
+        return Math.max(-problem.getWindow(), Math.min(problem.getWindow(), shift));
+    }
+
+
+    /**
+     * Converts a chromosome to a map from target coordId to landing time shift.
+     */
+    protected Map<Integer, Long> toMap(int[] chromosome) {
+        Map<Integer, Long> map = new HashMap<>();
+        for (int i = 0; i < problem.targetCount(); i++) {
+            map.put(problem.target(i), (long) chromosome[i]);
+        }
+        return map;
+    }
+
+
+    /**
+     * Sets the snapshot of a run and tabulates the interval values for it.
+     */
+    protected void setProblem(ScheduleProblem problem) {
+        this.problem = problem;
+        buildValueTable();
+    }
+
+
+    /**
+     * Converts a map from target coordId to landing time shift to a chromosome.
+     * Uses the attacks of the last run, or the current attacks if there has not been one.
+     */
+    private int[] toChromosome(Map<Integer, Long> map) {
+        if (problem == null) setProblem(new ScheduleProblem(operation));
+        int[] chromosome = new int[problem.targetCount()];
+        for (int i = 0; i < problem.targetCount(); i++) {
+            chromosome[i] = map.get(problem.target(i)).intValue();
+        }
+        return chromosome;
+    }
+
+
+    /**
+     * Computes the fitness for a candidate solution based
+     * on how much it deviates from the optimal schedule.
+     * @param candidate map from target coordId to landing time shift
+     * @return fitness value
+     */
+    @Override
+    public double fitness(Map<Integer, Long> candidate) {
+        return fitness(toChromosome(candidate), 0);
+    }
+
+
+    /**
+     * Computes the fitness of a chromosome in a population array.
+     * Genes are landing time shifts by target ordinal, in the order of the last run.
+     * @param chromosomes population array
+     * @param offset start of the chromosome in the array
+     * @return fitness value
+     */
+    public double fitness(int[] chromosomes, int offset) {
+
+        double candidateFitness = 0;
+        long[] sends = scratch();
+
+        for (int p = 0; p < problem.playerCount(); p++) {
+            int count = sortedSends(p, chromosomes, offset, sends);
+            // Sum interval values
+            // If any of the values is zero, the fitness of this chromosome is zero
+            // (discourages solutions with impossible send windows)
+            for (int i = 0; i < count-1; i++) {
+                long interval = ScheduleProblem.sendingTime(sends[i+1]) - ScheduleProblem.sendingTime(sends[i]);
+                double value = tableValue(interval, ScheduleProblem.waves(sends[i+1]));
+                if (value < 0.001) return 0.0;
+                candidateFitness += value;
+            }
+        }
+        return candidateFitness;
+    }
+
+
+    /**
+     * Computes the packed sends of a player's attacks with the candidate landing times, in sending order.
+     * Sending times are relative to the default landing time of the operation.
+     * @param player index of the player
+     * @param chromosomes population array
+     * @param offset start of the chromosome in the array
+     * @param sends array to write the sends to
+     * @return amount of sends written
+     */
+    private int sortedSends(int player, int[] chromosomes, int offset, long[] sends) {
+        int[] attackGenes = problem.genes(player);
+        long[] packedSends = problem.packedSends(player);
+        for (int i = 0; i < attackGenes.length; i++) {
+            sends[i] = packedSends[i] + ((long) chromosomes[offset + attackGenes[i]] << ScheduleProblem.WAVE_BITS);
+        }
+        Arrays.sort(sends, 0, attackGenes.length);
+        return attackGenes.length;
+    }
+
+
+    /**
+     * @return send buffer of the calling thread, large enough for the attacks of any player
+     */
+    private long[] scratch() {
+        long[] sends = scratch.get();
+        if (sends.length < problem.getMaxAttacks()) {
+            sends = new long[problem.getMaxAttacks()];
+            scratch.set(sends);
+        }
+        return sends;
+    }
+
+
+    /**
+     * Looks up the value of the sending time interval from the table of the current snapshot.
+     * Intervals and waves outside the table are computed.
+     * @param interval interval to be evaluated
+     * @param waves waves to be set for the next send
+     * @return value of this interval, between 0 and bestValue (both inclusive)
+     */
+    @Override
+    public double value(long interval, int waves) {
+        if (interval >= 0 && interval < tableIntervals && waves >= 0 && waves <= tableWaves) {
+            return tableValue(interval, waves);
+        }
+        return curve(interval, waves);
+    }
+
+
+    /**
+     * Value of an interval between two sorted sends of the current snapshot, from the tables without branches.
+     * Sends are sorted and waves come from the snapshot, so only the interval can be out of the table,
+     * and only if a landing time shift is outside the flex window; such intervals are scored
+     * as the longest interval in the table.
+     * @param interval interval to be evaluated, not negative
+     * @param waves waves of a send in the snapshot
+     * @return value of this interval
+     */
+    double tableValue(long interval, int waves) {
+        int i = (int) Math.min(interval, tableIntervals - 1);
+        return cutoffMask[Math.min(i, cutoffMask.length - 1)] * valueTable[i + waveOffsets[waves]];
+    }
+
+
+    /**
+     * Computes the value of the sending time interval based on deviation from the optimum.
+     * @param interval interval to be evaluated
+     * @param waves waves to be set for the next send
+     * @return value of this interval, between 0 and bestValue (both inclusive)
+     */
+    public double curve(long interval, int waves) {
+        // Cutoff
+        if (interval < cutoff) return 0.0;
+        return discount(interval - optimalInterval(waves));
+    }
+
+
+    /**
+     * @param diff deviation from the optimal interval in seconds
+     * @return value of the interval without the cutoff
+     */
+    private double discount(long diff) {
+        // Discounting
+        if (diff < -4L) return Math.max(0, bestValue - Math.pow(diff+4, 2) / 4);
+        if (diff > 54L) return baseValueRatio * bestValue + (1-baseValueRatio) * bestValue / (diff-54);
+        // Flat peak; in a certain window around the optimal interval we do not care about the actual seconds
+        return bestValue;
+    }
+
+
+    /**
+     * Optimal interval for sends is defined by a base value
+     * and the amount of waves the player needs to set for the next send.
+     * 60s + 5s per wave is used as an optimal interval by default,
+     * so 65s for a single attack, 80s for a 4-wave attack, and 1min30s for a 8-wave attack.
+     * @param waves the amount of waves
+     * @return the optimal sending interval
+     */
+    private long optimalInterval(int waves) {
+        return BASE_INTERVAL + secondsPerWave * waves;
+    }
+
+
+    /**
+     * Tabulates the value curve for the waves in the snapshot and for every interval the sends of a player
+     * can have: the spread of their sending times with the default landing time, plus twice the flex window.
+     * The row is indexed by the interval less the optimal interval, offset so that it starts
+     * at the interval 0 of the wave count with the longest optimal interval.
+     */
+    private void buildValueTable() {
+        if (problem == null) return;
+        int maxWaves = 0;
+        long maxSpread = 0;
+        for (int p = 0; p < problem.playerCount(); p++) {
+            for (int waves : problem.waves(p)) maxWaves = Math.max(maxWaves, waves);
+            long earliest = Long.MAX_VALUE;
+            long latest = Long.MIN_VALUE;
+            for (long packed : problem.packedSends(p)) {
+                earliest = Math.min(earliest, ScheduleProblem.sendingTime(packed));
+                latest = Math.max(latest, ScheduleProblem.sendingTime(packed));
+            }
+            if (earliest <= latest) maxSpread = Math.max(maxSpread, latest - earliest);
+        }
+        maxWaves = (int) Math.min(maxWaves, ScheduleProblem.WAVE_MASK);
+        int intervals = (int) (maxSpread + 2L * problem.getWindow() + 1);
+        long longestOptimal = Long.MIN_VALUE;
+        for (int waves = 0; waves <= maxWaves; waves++) {
+            longestOptimal = Math.max(longestOptimal, optimalInterval(waves));
+        }
+        int[] offsets = new int[maxWaves + 1];
+        for (int waves = 0; waves <= maxWaves; waves++) {
+            offsets[waves] = (int) (longestOptimal - optimalInterval(waves));
+        }
+        int lastOffset = 0;
+        for (int offset : offsets) lastOffset = Math.max(lastOffset, offset);
+        double[] table = new double[intervals + lastOffset];
+        for (int k = 0; k < table.length; k++) {
+            table[k] = discount(k - longestOptimal);
+        }
+        double[] mask = new double[(int) Math.max(0, Math.min(cutoff, intervals)) + 1];
+        mask[mask.length - 1] = 1.0;
+        valueTable = table;
+        waveOffsets = offsets;
+        cutoffMask = mask;
+        tableIntervals = intervals;
+        tableWaves = maxWaves;
+    }
+
+
+    public void setBestValue(double bestValue) {
+        this.bestValue = bestValue;
+        buildValueTable();
+    }
+
+
+    public void setBaseValueRatio(double baseValueRatio) {
+        this.baseValueRatio = baseValueRatio;
+        buildValueTable();
+    }
+
+
+    /**
+     * @param cutoff interval below which the value is zero, in seconds
+     */
+    public void setCutoff(long cutoff) {
+        this.cutoff = cutoff;
+        buildValueTable();
+    }
+
+
+    /**
+     * @param secondsPerWave seconds added to the optimal interval per wave to set
+     */
+    public void setSecondsPerWave(long secondsPerWave) {
+        this.secondsPerWave = secondsPerWave;
+        buildValueTable();
+    }
+
+
+    /**
+     * Returns the smallest interval in a chromosome.
+     * @param chromosome map from target coordId to landing time shift
+     */
+    @Override
+    public long smallestInterval(Map<Integer, Long> chromosome) {
+        return smallestInterval(toChromosome(chromosome), 0);
+    }
+
+
+    /**
+     * Returns the smallest interval of a chromosome in a population array.
+     * Genes are landing time shifts by target ordinal, in the order of the last run.
+     * @param chromosomes population array
+     * @param offset start of the chromosome in the array
+     */
+    public long smallestInterval(int[] chromosomes, int offset) {
+
+        long smallest = Integer.MAX_VALUE;
+        long[] sends = scratch();
+
+        // Find the smallest
+        for (int p = 0; p < problem.playerCount(); p++) {
+            int count = sortedSends(p, chromosomes, offset, sends);
+            for (int i = 0; i < count-1; i++) {
+                long interval = ScheduleProblem.sendingTime(sends[i+1]) - ScheduleProblem.sendingTime(sends[i]);
+                if (interval < smallest) smallest = interval;
+            }
+        }
+        return smallest;
+    }
+}
@@ -0,0 +1,76 @@
+package planner.util;
+
+import java.util.Random;
+
+/**
+ * Samples indexes with probability proportional to their weights in constant time (Vose's alias method).
+ * The table is built in place over the weight array, and its other arrays are reused
+ * when it is rebuilt for weights of the same or smaller length.
+ */
+public class AliasTable {
+
+    /**
+     * Per column: probability of keeping the column index instead of its alias; the weight array after build.
+     */
+    private double[] probability;
+
+    private int[] alias = new int[0];
+
+    /**
+     * Work list of under- and overfull columns, from the front and from the back.
+     */
+    private int[] work = new int[0];
+
+    private int size;
+
+
+    /**
+     * Builds the table. The weights are overwritten and must not be changed while sampling.
+     * @param weights non-negative weights with a positive sum
+     * @param size amount of weights to use from the start of the array
+     */
+    public void build(double[] weights, int size) {
+        if (alias.length < size) {
+            alias = new int[size];
+            work = new int[size];
+        }
+        this.probability = weights;
+        this.size = size;
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += weights[i];
+        }
+        // Scale so that the average column is full
+        int small = 0;
+        int large = size;
+        for (int i = 0; i < size; i++) {
+            weights[i] = weights[i] * size / total;
+            alias[i] = i;
+            if (weights[i] < 1.0) work[small++] = i;
+            else work[--large] = i;
+        }
+        // Fill each underfull column with the excess of an overfull one
+        while (small > 0 && large < size) {
+            int less = work[--small];
+            int more = work[large];
+            alias[less] = more;
+            weights[more] -= 1.0 - weights[less];
+            if (weights[more] < 1.0) {
+                large++;
+                work[small++] = more;
+            }
+        }
+        // Whatever is left is full up to rounding
+        for (int i = 0; i < small; i++) weights[work[i]] = 1.0;
+        for (int i = large; i < size; i++) weights[work[i]] = 1.0;
+    }
+
+
+    /**
+     * @return random index
+     */
+    public int sample(Random random) {
+        int column = random.nextInt(size);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
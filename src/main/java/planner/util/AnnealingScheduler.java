@@ -0,0 +1,118 @@
+package planner.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import planner.entities.Operation;
+
+/**
+ * Optimises the landing times by simulated annealing. One landing time is moved at a time,
+ * and worse schedules are accepted with a probability that shrinks as the temperature cools.
+ * Intervals with zero value are penalised instead of zeroing the score, so that the search
+ * can work its way out of conflicts. The best schedule seen is returned.
+ */
+public class AnnealingScheduler extends AbstractScheduler {
+
+    private static final double PROB_JUMP = 0.1;
+    private static final double FINAL_TEMPERATURE_RATIO = 0.001;
+    private static final int PROGRESS_STEPS = 100;
+
+    /**
+     * Moves in a run per target.
+     */
+    @Getter
+    @Setter
+    private int movesPerTarget = 5000;
+
+    /**
+     * Starting temperature as a proportion of the best value;
+     * at 0.5, a move losing half an optimal interval is first accepted about every third time.
+     */
+    @Getter
+    @Setter
+    private double initialTemperature = 0.5;
+
+    private final Random random = new Random();
+
+
+    /**
+     * @param operation operation to be scheduled
+     * @param bestValue value for an optimal interval
+     * @param baseValueRatio proportion of the best value
+     */
+    public AnnealingScheduler(Operation operation, double bestValue, double baseValueRatio) {
+        super(operation, bestValue, baseValueRatio);
+    }
+
+
+    /**
+     * Anneals from random landing times until the moves or the time budget are used up,
+     * or the target fitness is reached.
+     */
+    @Override
+    public Map<Integer, Long> schedule(ScheduleProblem problem, Duration budget) throws IllegalStateException {
+
+        progress.set(0);
+        long start = System.nanoTime();
+        long deadline = budget == null ? Long.MAX_VALUE : start + budget.toNanos();
+
+        setProblem(problem);
+        System.out.println("--- Annealing scheduler started with " + problem.targetCount() + " targets");
+        if (problem.targetCount() == 0) throw new IllegalStateException("Could not read attacks");
+        if (problem.getWindow() == 0) throw new IllegalStateException("No flex window set");
+        System.out.println("--- Flex window: " + problem.getWindow());
+
+        int genes = problem.targetCount();
+        int window = problem.getWindow();
+        int step = Math.max(1, window / 10);
+        int[] best = new int[genes];
+        for (int i = 0; i < genes; i++) {
+            best[i] = random.nextInt(window * 2) - window;
+        }
+        ScheduleState state = new ScheduleState(problem, this);
+        state.load(best, 0);
+        double score = state.penalisedFitness(bestValue);
+        double bestFitness = state.fitness();
+
+        long moves = (long) movesPerTarget * genes;
+        long progressStep = moves / PROGRESS_STEPS + 1;
+        double temperature = initialTemperature * bestValue;
+        double cooling = Math.pow(FINAL_TEMPERATURE_RATIO, 1.0 / moves);
+        for (long m = 0; m < moves; m++, temperature *= cooling) {
+
+            if (m % progressStep == 0) {
+                double elapsed = budget == null ? 0 : (double) (System.nanoTime() - start) / budget.toNanos();
+                progress.set(Math.min(1.0, Math.max((double) m / moves, elapsed)));
+                if (System.nanoTime() >= deadline || bestFitness >= getTargetFitness()) break;
+            }
+
+            // Mostly small steps, sometimes anywhere in the window
+            int target = random.nextInt(genes);
+            int old = state.gene(target);
+            int shift = random.nextDouble() < PROB_JUMP
+                    ? random.nextInt(window * 2) - window
+                    : clamp(old + random.nextInt(2 * step + 1) - step);
+            if (shift == old) continue;
+            state.set(target, shift);
+            double newScore = state.penalisedFitness(bestValue);
+            if (newScore >= score || random.nextDouble() < Math.exp((newScore - score) / temperature)) {
+                score = newScore;
+                double fitness = state.fitness();
+                if (fitness > bestFitness) {
+                    bestFitness = fitness;
+                    state.copyTo(best, 0);
+                }
+            } else {
+                state.set(target, old);
+            }
+        }
+        progress.set(1.0);
+        System.out.println("--- Best found: " + bestFitness);
+        if (bestFitness < 0.001) return null;
+        return toMap(best);
+    }
+}
@@ -1,5 +1,8 @@
 package planner.util;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
 import planner.entities.Attack;
 
 public class Converters {
@@ -132,4 +135,25 @@ public class Converters {
                 return "Invalid Artefact";
         }
     }
+
+
+    /**
+     * Converts a time to seconds for arithmetic and comparisons in hot loops.
+     * Server times carry no zone, so UTC is used on both ways and only differences are meaningful.
+     * @param time time with whole seconds
+     * @return seconds since 1970-01-01 00:00:00
+     */
+    public static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+
+    /**
+     * Converts seconds from toEpochSecond back to a time, for formatting.
+     * @param epochSecond seconds since 1970-01-01 00:00:00
+     * @return time
+     */
+    public static LocalDateTime fromEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
 }
@@ -0,0 +1,165 @@
+package planner.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import planner.entities.Operation;
+
+/**
+ * Finds the smallest flex window with which the attacks can be scheduled.
+ * Several windows are tried at the same time, one scheduler per window. With the GeneticScheduler,
+ * each batch of windows starts from the population of the largest window of the previous batch,
+ * stretched to the wider window.
+ */
+public class FlexWindowSearch {
+
+    private final Operation operation;
+
+    private final double bestValue;
+
+    private final double baseValueRatio;
+
+    /**
+     * Scheduler engine to use.
+     */
+    @Getter
+    @Setter
+    private Scheduler.Factory engine = GeneticScheduler::new;
+
+    /**
+     * Windows tried at the same time.
+     */
+    @Getter
+    @Setter
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Time limit for scheduling one window, or null for no limit.
+     */
+    @Getter
+    @Setter
+    private Duration budget;
+
+    @Getter
+    private DoubleProperty progress = new SimpleDoubleProperty(0.0);
+
+    /**
+     * Flex window of the solution found in the last search.
+     */
+    @Getter
+    private int window;
+
+    /**
+     * Scheduler that found the solution in the last search.
+     */
+    @Getter
+    private Scheduler scheduler;
+
+
+    /**
+     * @param operation operation to be scheduled
+     * @param bestValue value for an optimal interval, as in GeneticScheduler
+     * @param baseValueRatio proportion of the best value, as in GeneticScheduler
+     */
+    public FlexWindowSearch(Operation operation, double bestValue, double baseValueRatio) {
+        this.operation = operation;
+        this.bestValue = bestValue;
+        this.baseValueRatio = baseValueRatio;
+    }
+
+
+    /**
+     * Tries the windows from the smallest up until one of them can be scheduled.
+     * @param from smallest window in seconds
+     * @param to largest window in seconds
+     * @param step difference between windows in seconds
+     * @return map from target coordId to landing time shift with the smallest window found,
+     * or null if none of the windows could be scheduled.
+     */
+    public Map<Integer, Long> search(int from, int to, int step) {
+        progress.set(0);
+        window = 0;
+        scheduler = null;
+        int windows = (to - from) / step + 1;
+        int batchSize = batchSize(new ScheduleProblem(operation, from).targetCount());
+        Scheduler previous = null;
+        // Windows of a batch, and the genetic schedulers' own threads, share a pool
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            for (int first = 0; first < windows; first += batchSize) {
+                int batch = Math.min(batchSize, windows - first);
+                // Snapshots are taken here, as reading the attacks is not safe from many threads
+                ScheduleProblem[] problems = new ScheduleProblem[batch];
+                Scheduler[] schedulers = new Scheduler[batch];
+                for (int k = 0; k < batch; k++) {
+                    problems[k] = new ScheduleProblem(operation, from + (first + k) * step);
+                    schedulers[k] = engine.create(operation, bestValue, baseValueRatio);
+                    if (schedulers[k] instanceof GeneticScheduler) {
+                        ((GeneticScheduler) schedulers[k]).setPool(pool);
+                        ((GeneticScheduler) schedulers[k]).setWarmStart(true);
+                        if (previous instanceof GeneticScheduler) {
+                            ((GeneticScheduler) schedulers[k]).warmStartFrom((GeneticScheduler) previous);
+                        }
+                    }
+                    int done = first;
+                    schedulers[k].getProgress().addListener((observable, oldValue, newValue) ->
+                            reportProgress((done + (double) newValue) / windows));
+                }
+                System.out.println("Scheduling for flex windows of " + problems[0].getWindow()
+                        + " to " + problems[batch - 1].getWindow() + " seconds");
+                List<Map<Integer, Long>> solutions = new ArrayList<>(Collections.nCopies(batch, null));
+                pool.submit(() -> IntStream.range(0, batch).parallel().forEach(k -> {
+                    try {
+                        solutions.set(k, schedulers[k].schedule(problems[k], budget));
+                    } catch (IllegalStateException e) {
+                        e.printStackTrace();
+                    }
+                })).join();
+                for (int k = 0; k < batch; k++) {
+                    if (solutions.get(k) != null) {
+                        window = problems[k].getWindow();
+                        scheduler = schedulers[k];
+                        reportProgress(1.0);
+                        return solutions.get(k);
+                    }
+                }
+                previous = schedulers[batch - 1];
+            }
+        } finally {
+            pool.shutdown();
+        }
+        reportProgress(1.0);
+        return null;
+    }
+
+
+    /**
+     * Publishes the progress of the search; called from the scheduler threads.
+     * Progress only moves forward, whichever window reports.
+     */
+    private synchronized void reportProgress(double value) {
+        if (value > progress.get()) progress.set(value);
+    }
+
+
+    /**
+     * @param genes targets in the operation
+     * @return windows to try at the same time; fewer if the populations would not fit in memory
+     */
+    private int batchSize(int genes) {
+        // Two population arrays per scheduler and one kept for the warm start of the next batch
+        long populationBytes = 4L * GeneticScheduler.POPULATION_SIZE * Math.max(1, genes);
+        long fits = Runtime.getRuntime().maxMemory() / (3 * populationBytes);
+        return (int) Math.max(1, Math.min(parallelism, fits));
+    }
+}
@@ -1,25 +1,15 @@
 package planner.util;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.SimpleDoubleProperty;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
-import org.apache.commons.math3.util.Pair;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
+import lombok.Setter;
 
-import planner.entities.Attack;
-import planner.entities.AttackerVillage;
 import planner.entities.Operation;
 
 /**
@@ -29,39 +19,99 @@ import planner.entities.Operation;
  * This is achieved by selecting the fitness function so that it gives
  * the best score for optimal attack intervals.
  */
-@RequiredArgsConstructor
-public class GeneticScheduler {
+public class GeneticScheduler extends AbstractScheduler {
 
-    private Operation operation;
+    /**
+     * How parents are picked for the next generation.
+     */
+    public enum Selection {
+        /**
+         * Fitness proportionate, sampled from an alias table.
+         */
+        ROULETTE,
+        /**
+         * The fittest of a few chromosomes picked uniformly at random.
+         */
+        TOURNAMENT
+    }
 
-    private static final int POPULATION_SIZE = 100000;
+    static final int POPULATION_SIZE = 100000;
     private static final int GENERATIONS = 20;
     private static final double PROB_CROSSOVER = 0.7;
     private static final double PROB_MUTATION = 0.2;
     private static final double RATIO_SPATIAL = 0.2;
+    private static final int LOCAL_SEARCH_MOVES = 20;
+    /**
+     * Relative improvement of the best fitness that resets the stagnation count.
+     */
+    private static final double MIN_IMPROVEMENT = 0.0005;
 
-    private double bestValue;
-    private double baseValueRatio;
+    @Getter
+    @Setter
+    private Selection selection = Selection.ROULETTE;
 
-    private Map<Integer, List<Attack>> attacksPerPlayer = new HashMap<>();
+    /**
+     * Chromosomes competing in one tournament.
+     */
+    @Getter
+    @Setter
+    private int tournamentSize = 3;
 
-    private List<Integer> targetList = new ArrayList<>();
+    /**
+     * Generations without improvement of the best fitness after which a run stops.
+     */
+    @Getter
+    @Setter
+    private int stagnationLimit = 4;
 
-    private Random random = new Random();
+    /**
+     * Generations computed in the last run.
+     */
+    @Getter
+    private int generationsRun;
 
+    /**
+     * Sub-populations evolving on their own threads; 1 evolves one population
+     * and evaluates it on all cores.
+     */
     @Getter
-    private DoubleProperty progress = new SimpleDoubleProperty(0.0);
+    @Setter
+    private int islands = 1;
+
+    /**
+     * Generations between exchanges of the best chromosomes of the islands.
+     */
+    @Getter
+    @Setter
+    private int migrationInterval = 5;
+
+    /**
+     * Threads for the islands and for evaluating a single population.
+     * If not set, each run uses a pool of its own instead of the common pool.
+     */
+    @Getter
+    @Setter
+    private ForkJoinPool pool;
+
+    /**
+     * Start from the final population and best chromosome of the previous run when they fit.
+     */
+    @Getter
+    @Setter
+    private boolean warmStart = false;
+
+    /**
+     * Snapshot, final population and best chromosome of the previous run, for warm starts.
+     */
+    private ScheduleProblem previousProblem;
+    private int[][] previousPopulations;
+    private int[] previousBest;
+
+    private Random random = new Random();
 
 
     /**
      * Initialises a genetic attack scheduler.
-     * Parameters determine the fitness function
-     * and can be used to weigh long send intervals to taste.
-     * The higher the bestValue, the slower the value of the interval
-     * drops when it gets longer.
-     * baseValueRatio of 0.0 means that long intervals are highly penalised,
-     * baseValueRatio of 1.0 means that long intervals are as good as the
-     * optimal ones.
      * @param operation operation to be scheduled
      * @param bestValue value for an optimal interval
      * @param baseValueRatio proportion of the best value
@@ -70,53 +120,266 @@ public class GeneticScheduler {
                             double bestValue,
                             double baseValueRatio
     ) {
-        this.operation = operation;
-        this.bestValue = bestValue;
-        this.baseValueRatio = baseValueRatio;
+        super(operation, bestValue, baseValueRatio);
     }
 
 
     /**
-     * Runs the algorithm on a given operation with the fixed parameters.
+     * Runs the algorithm on a snapshot of the operation, for instance one with a different flex window.
+     * The run stops when the best fitness has not improved in stagnationLimit generations,
+     * after GENERATIONS generations, after the generation during which the budget runs out,
+     * or when the best fitness reaches the target fitness.
+     * With several islands, stopping is checked when the islands exchange their best chromosomes.
+     * @param problem attacks to schedule
+     * @param budget wall-clock time for the run, or null for no limit
      * @return map from target coordId to landing time shift
      * or null if the attacks could not be scheduled.
-     * @throws IllegalStateException if the attacks could not be read
-     * (for instance, if there are no attacks to schedule).
+     * @throws IllegalStateException if there are no attacks to schedule or no flex window
      */
-    public Map<Integer, Long> schedule() throws IllegalStateException {
+    @Override
+    public Map<Integer, Long> schedule(ScheduleProblem problem, Duration budget) throws IllegalStateException {
 
         // Set progress to 0
         progress.set(0);
+        generationsRun = 0;
+        long start = System.nanoTime();
+        long deadline = budget == null ? Long.MAX_VALUE : start + budget.toNanos();
 
         // Read attacks
-        assembleAttackLists();
+        setProblem(problem);
+        System.out.println("--- Genetic scheduler started with chromosomes of length " + problem.targetCount());
         // Stop if there are no attacks to schedule
-        if (targetList.isEmpty()) throw new IllegalStateException("Could not read attacks");
+        if (problem.targetCount() == 0) throw new IllegalStateException("Could not read attacks");
         // Stop if the flex window is zero
-        if (operation.getRandomShiftWindow() == 0) throw new IllegalStateException("No flex window set");
-        System.out.println("--- Flex window: " + operation.getRandomShiftWindow());
+        if (problem.getWindow() == 0) throw new IllegalStateException("No flex window set");
+        System.out.println("--- Flex window: " + problem.getWindow());
+
+        int genes = problem.targetCount();
+        Island[] islandArray = new Island[Math.max(1, islands)];
+        int islandSize = POPULATION_SIZE / islandArray.length;
+        for (int k = 0; k < islandArray.length; k++) {
+            islandArray[k] = new Island(islandArray.length == 1 ? "" : ", island " + k,
+                    islandSize, random.nextLong(), islandArray.length == 1, start, budget);
+        }
+        // Initial population
+        if (warmStart && previousProblem != null && problem.sameTargets(previousProblem)) {
+            // Previous population stretched to this window, and the previous best as it was
+            System.out.println("--- Warm start from a flex window of " + previousProblem.getWindow());
+            double scale = (double) problem.getWindow() / previousProblem.getWindow();
+            int previousSize = previousPopulations[0].length / genes;
+            int previousCount = previousPopulations.length * previousSize;
+            for (int k = 0; k < islandArray.length; k++) {
+                for (int j = 0; j < islandSize; j++) {
+                    int c = (k * islandSize + j) % previousCount;
+                    int[] previous = previousPopulations[c / previousSize];
+                    int offset = (c % previousSize) * genes;
+                    for (int g = 0; g < genes; g++) {
+                        islandArray[k].population[j * genes + g] = clamp((int) Math.round(previous[offset + g] * scale));
+                    }
+                }
+                for (int g = 0; g < genes; g++) {
+                    islandArray[k].population[g] = clamp(previousBest[g]);
+                }
+            }
+        } else {
+            for (Island island : islandArray) {
+                for (int j = 0; j < islandSize; j++) {
+                    island.randomChromosome(island.population, j * genes);
+                }
+            }
+        }
 
-        Map<Integer, Long> currentBest = randomChromosome();
-        double currentBestFitness = 0.0;
-        long smallestInterval = 0L;
+        // Islands evolve on their own between migrations; a single population is checked every generation
+        int epoch = islandArray.length == 1 ? 1 : Math.max(1, migrationInterval);
+        double stagnantFitness = 0.0;
+        int stagnantGenerations = 0;
+        Island best = islandArray[0];
+        ForkJoinPool runPool = pool != null ? pool : new ForkJoinPool();
+        try {
+            for (int i = 0; i < GENERATIONS; i += epoch) {
+
+                int first = i;
+                int last = Math.min(GENERATIONS, i + epoch);
+                // Parallel streams started inside the pool, like the evaluation of a single population, also run in it
+                runPool.submit(() -> IntStream.range(0, islandArray.length).parallel().forEach(k -> {
+                    for (int g = first; g < last; g++) {
+                        if (g > 0) islandArray[k].breed();
+                        islandArray[k].evaluate(g);
+                        reportProgress(islandArray);
+                        if (System.nanoTime() >= deadline) break;
+                    }
+                })).join();
+                for (Island island : islandArray) {
+                    generationsRun = Math.max(generationsRun, island.generations);
+                    if (island.currentBestFitness > best.currentBestFitness) best = island;
+                }
 
-        // Initial population
-        @SuppressWarnings("unchecked")
-        Map<Integer, Long>[] population = new HashMap[POPULATION_SIZE];
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            population[i] = randomChromosome();
+                // Stop when the best has plateaued or time is up
+                if (best.currentBestFitness > stagnantFitness * (1 + MIN_IMPROVEMENT)) {
+                    stagnantFitness = best.currentBestFitness;
+                    stagnantGenerations = 0;
+                } else {
+                    stagnantGenerations += last - first;
+                }
+                if (stagnantGenerations >= stagnationLimit) {
+                    System.out.println("--- No improvement in " + stagnantGenerations + " generations");
+                    break;
+                }
+                if (System.nanoTime() >= deadline) {
+                    System.out.println("--- Time budget of " + budget.toMillis() + " ms used");
+                    break;
+                }
+                if (best.currentBestFitness >= getTargetFitness()) {
+                    System.out.println("--- Target fitness reached");
+                    break;
+                }
+
+                // Each island sends a copy of its best to the next one
+                if (islandArray.length > 1) {
+                    int[][] migrants = new int[islandArray.length][];
+                    for (int k = 0; k < islandArray.length; k++) {
+                        migrants[k] = Arrays.copyOf(islandArray[k].currentBest, genes);
+                    }
+                    for (int k = 0; k < islandArray.length; k++) {
+                        Island from = islandArray[k];
+                        islandArray[(k + 1) % islandArray.length]
+                                .receive(migrants[k], from.currentBestFitness, from.smallestInterval);
+                    }
+                }
+            }
+        } finally {
+            if (runPool != pool) runPool.shutdown();
         }
+        progress.set(1.0);
+        previousProblem = problem;
+        previousPopulations = new int[islandArray.length][];
+        for (int k = 0; k < islandArray.length; k++) {
+            previousPopulations[k] = islandArray[k].population;
+        }
+        previousBest = best.currentBest;
+        System.out.println("--- Best in all generations: " + best.currentBestFitness);
+        if (best.currentBestFitness < 0.001) return null;
+        return toMap(best.currentBest);
+    }
 
-        for (int i = 0; i < GENERATIONS; i++) {
 
-            // Update progress
-            progress.set((1.0+i)/GENERATIONS);
+    /**
+     * Publishes the average progress of the islands; called from the island threads.
+     */
+    private synchronized void reportProgress(Island[] islandArray) {
+        double sum = 0;
+        for (Island island : islandArray) sum += island.progress;
+        progress.set(Math.max(progress.get(), sum / islandArray.length));
+    }
+
 
-            // Compute the fitness values of this generation
-            double[] fitnessValues = new double[POPULATION_SIZE];
-            double totalFitness = 0;
-            for (int j = 0; j < POPULATION_SIZE; j++) {
-                fitnessValues[j] = fitness(population[j]);
+    /**
+     * Continues from the final population and best chromosome of another scheduler's last run
+     * in the next run, if warm start is on.
+     */
+    public void warmStartFrom(GeneticScheduler other) {
+        previousProblem = other.previousProblem;
+        previousPopulations = other.previousPopulations;
+        previousBest = other.previousBest;
+    }
+
+
+    /**
+     * A population with its own random numbers and selection table, so that islands can evolve
+     * on separate threads. The snapshot and the fitness function are shared.
+     */
+    private class Island {
+
+        private final String name;
+
+        private final int size;
+
+        private final int genes;
+
+        /**
+         * Evaluate the population on all cores; otherwise on the calling thread.
+         */
+        private final boolean parallel;
+
+        private final long start;
+
+        private final Duration budget;
+
+        private final Random random;
+
+        private final AliasTable aliasTable = new AliasTable();
+
+        private final ScheduleState state;
+
+        /**
+         * Progress of this island from 0 to 1, published by reportProgress.
+         */
+        private volatile double progress = 0.0;
+
+        // Chromosomes are stored one after another in flat arrays, indexed by target ordinal.
+        // The next generation is written to the second array and the two are swapped.
+        private int[] population;
+        private int[] newPop;
+        private final double[] fitnessValues;
+        private double totalFitness;
+
+        private final int[] currentBest;
+        private double currentBestFitness = 0.0;
+        private long smallestInterval = 0L;
+
+        /**
+         * Generations evaluated.
+         */
+        private int generations = 0;
+
+
+        /**
+         * @param name name in the generation report
+         * @param size chromosomes in the population
+         * @param seed seed for random numbers
+         * @param parallel evaluate on all cores
+         * @param start start time of the run from System.nanoTime
+         * @param budget wall-clock time for the run, or null for no limit
+         */
+        Island(String name, int size, long seed, boolean parallel, long start, Duration budget) {
+            this.name = name;
+            this.size = size;
+            this.genes = problem.targetCount();
+            this.parallel = parallel;
+            this.start = start;
+            this.budget = budget;
+            this.random = new Random(seed);
+            this.state = new ScheduleState(problem, GeneticScheduler.this);
+            this.population = new int[size * genes];
+            this.newPop = new int[size * genes];
+            this.fitnessValues = new double[size];
+            this.currentBest = new int[genes];
+            randomChromosome(currentBest, 0);
+        }
+
+
+        /**
+         * Computes the fitness values of the population and improves the best chromosome.
+         * @param generation number of the generation
+         */
+        void evaluate(int generation) {
+
+            // Update progress by generations or time, whichever is further
+            double elapsed = budget == null ? 0 : (double) (System.nanoTime() - start) / budget.toNanos();
+            progress = Math.min(1.0, Math.max((1.0+generation)/GENERATIONS, elapsed));
+
+            // Evaluation only reads the snapshot, so it can be done in parallel
+            int[] generationPop = population;
+            if (parallel) {
+                IntStream.range(0, size).parallel()
+                        .forEach(j -> fitnessValues[j] = fitness(generationPop, j * genes));
+            } else {
+                for (int j = 0; j < size; j++) {
+                    fitnessValues[j] = fitness(generationPop, j * genes);
+                }
+            }
+            totalFitness = 0;
+            for (int j = 0; j < size; j++) {
                 totalFitness += fitnessValues[j];
             }
 
@@ -124,319 +387,216 @@ public class GeneticScheduler {
             int bestInThisIdx = findBest(fitnessValues);
             // Compare the best from this generation to the best of all chromosomes
             double difference = fitnessValues[bestInThisIdx] - currentBestFitness;
-            if (smallestInterval(population[bestInThisIdx]) >= smallestInterval) {
-                currentBest = copy(population[bestInThisIdx]);
-                currentBestFitness = fitness(currentBest);
-                smallestInterval = smallestInterval(currentBest);
+            if (smallestInterval(population, bestInThisIdx * genes) >= smallestInterval) {
+                System.arraycopy(population, bestInThisIdx * genes, currentBest, 0, genes);
+                currentBestFitness = fitness(currentBest, 0);
+                smallestInterval = smallestInterval(currentBest, 0);
+            }
+            // Local search around the best, changing one gene at a time
+            state.load(currentBest, 0);
+            if (localSearch(state, currentBestFitness, smallestInterval)) {
+                state.copyTo(currentBest, 0);
+                currentBestFitness = state.fitness();
+                smallestInterval = state.smallestInterval();
             }
             // Report scores
             System.out.println(
-                    "*** Generation " + i +
+                    "*** Generation " + generation + name +
                             ":\t" + fitnessValues[bestInThisIdx] + (difference > 0 ? "+" : "") +
-                            ", average score: " + Math.round(totalFitness / POPULATION_SIZE) +
+                            ", average score: " + Math.round(totalFitness / size) +
                             ",\tcurrent best: " + currentBestFitness +
                             ", smallest interval: " + smallestInterval
             );
+            generations = generation + 1;
+        }
 
-            // Reproduce
-            @SuppressWarnings("unchecked")
-            Map<Integer, Long>[] newPop = new HashMap[POPULATION_SIZE];
+
+        /**
+         * Replaces the evaluated population with the next generation.
+         */
+        void breed() {
             // If population has zero fitness, re-initialise
             if (totalFitness < 0.001) {
-                for (int j = 0; j < POPULATION_SIZE; j++) {
-                    newPop[j] = randomChromosome();
+                for (int j = 0; j < size; j++) {
+                    randomChromosome(newPop, j * genes);
                 }
             } else {
-                // Compute fitness ratios
-                for (int j = 0; j < POPULATION_SIZE; j++) {
-                    fitnessValues[j] = fitnessValues[j] / totalFitness * 100;
-                }
-                // Initialise the distribution
-                List<Pair<Map<Integer, Long>, Double>> itemsWeights = new ArrayList<>();
-                for (int j = 0; j < POPULATION_SIZE; j++) {
-                    itemsWeights.add(new Pair<>(population[j], fitnessValues[j]));
-                }
-                EnumeratedDistribution<Map<Integer, Long>> dist = new EnumeratedDistribution<>(itemsWeights);
+                // Roulette samples from a table built over the fitness values
+                if (selection == Selection.ROULETTE) aliasTable.build(fitnessValues, size);
                 // Spatial search: clone the best solution with slight variations
-                for (int j = 0; j < (int) Math.round(POPULATION_SIZE * RATIO_SPATIAL); j++) {
-                    newPop[j] = tweak(currentBest);
+                for (int j = 0; j < (int) Math.round(size * RATIO_SPATIAL); j++) {
+                    tweak(currentBest, newPop, j * genes);
                 }
                 // Fill up new population by crossovers or old candidates
-                for (int j = (int) Math.round(POPULATION_SIZE * RATIO_SPATIAL); j < POPULATION_SIZE; j++) {
+                for (int j = (int) Math.round(size * RATIO_SPATIAL); j < size; j++) {
                     if (random.nextDouble() < PROB_CROSSOVER) {
-                        @SuppressWarnings("unchecked")
-                        Map<Integer, Long>[] parents = new HashMap[2];
-                        dist.sample(2, parents);
-                        newPop[j] = crossover(parents[0], parents[1]);
+                        int parent1 = select(fitnessValues);
+                        int parent2 = select(fitnessValues);
+                        crossover(population, parent1 * genes, parent2 * genes, newPop, j * genes);
                     } else {
-                        newPop[j] = dist.sample();
+                        System.arraycopy(population, select(fitnessValues) * genes, newPop, j * genes, genes);
                     }
                     // Mutation
                     if (random.nextDouble() < PROB_MUTATION) {
-                        int randomIdx = random.nextInt(targetList.size());
-                        newPop[j].put(
-                                targetList.get(randomIdx),
-                                (long) random.nextInt(operation.getRandomShiftWindow() * 2)
-                                        - operation.getRandomShiftWindow()
-                        );
+                        int randomIdx = random.nextInt(genes);
+                        newPop[j * genes + randomIdx] = randomShift();
                     }
                 }
             }
 
             // Switch to the new generation
+            int[] previous = population;
             population = newPop;
+            newPop = previous;
         }
-        System.out.println("--- Best in all generations: " + currentBestFitness);
-        if (currentBestFitness < 0.001) return null;
-        return currentBest;
-    }
 
 
-    /**
-     * Clones planned attacks from the operation to player-wise attack lists for evaluation.
-     */
-    private void assembleAttackLists() {
-
-        Set<Integer> targetIds = new HashSet<>();
-        // Assemble attack lists player-wise
-        attacksPerPlayer.clear();
-        for (AttackerVillage attackerVillage : operation.getAttackers()) {
-            if (!attacksPerPlayer.containsKey(attackerVillage.getPlayerId())) {
-                attacksPerPlayer.put(attackerVillage.getPlayerId(), new ArrayList<>());
+        /**
+         * Takes in the best chromosome of another island in place of the worst of the evaluated population,
+         * and as the best of this island if it is better by the same rules.
+         */
+        void receive(int[] migrant, double fitness, long smallest) {
+            int worst = 0;
+            for (int j = 1; j < size; j++) {
+                if (fitnessValues[j] < fitnessValues[worst]) worst = j;
             }
-            for (Attack attack : attackerVillage.getPlannedAttacks()) {
-                attacksPerPlayer.get(attackerVillage.getPlayerId()).add(attack);
-                targetIds.add(attack.getTarget().getCoordId());
+            System.arraycopy(migrant, 0, population, worst * genes, genes);
+            totalFitness += fitness - fitnessValues[worst];
+            fitnessValues[worst] = fitness;
+            if (fitness > currentBestFitness && smallest >= smallestInterval) {
+                System.arraycopy(migrant, 0, currentBest, 0, genes);
+                currentBestFitness = fitness;
+                smallestInterval = smallest;
             }
         }
-        // Initialise target list for chromosome building
-        targetList.clear();
-        targetList.addAll(targetIds);
-        System.out.println("--- Genetic scheduler started with chromosomes of length " + targetList.size());
-    }
 
 
-    /**
-     * Constructs a random chromosome in the search space.
-     * @return map from target coordId to landing time shift
-     */
-    private Map<Integer, Long> randomChromosome() {
-        Map<Integer, Long> chromosome = new HashMap<>();
-        for (Integer t_coordId : targetList) {
-            chromosome.put(
-                    t_coordId,
-                    (long) random.nextInt(operation.getRandomShiftWindow() * 2)
-                            - operation.getRandomShiftWindow()
-            );
+        /**
+         * @return random landing time shift within the flex window
+         */
+        private int randomShift() {
+            return random.nextInt(problem.getWindow() * 2) - problem.getWindow();
         }
-        return chromosome;
-    }
 
 
-    /**
-     * Computes the fitness for a candidate solution based
-     * on how much it deviates from the optimal schedule.
-     * @param candidate map from target coordId to landing time shift
-     * @return fitness value
-     */
-    public double fitness(Map<Integer, Long> candidate) {
-
-        List<SortableAttack[]> attackArrays = new ArrayList<>();
-
-        // Insert candidate values
-        for (List<Attack> attackList : attacksPerPlayer.values()) {
-            SortableAttack[] attackArray = new SortableAttack[attackList.size()];
-            for (int i = 0; i < attackList.size(); i++) {
-                attackList.get(i).setLandingTime(
-                        operation.getDefaultLandingTime()
-                                .plusSeconds(candidate.get(attackList.get(i).getTarget().getCoordId()))
-                );
-                attackArray[i] = new SortableAttack(
-                        attackList.get(i).getTarget().getCoordId(),
-                        attackList.get(i).getSendingTime(),
-                        attackList.get(i).getWaves()
-                );
+        /**
+         * Constructs a random chromosome in the search space.
+         * @param chromosomes array to write to
+         * @param offset start of the chromosome in the array
+         */
+        private void randomChromosome(int[] chromosomes, int offset) {
+            for (int i = 0; i < problem.targetCount(); i++) {
+                chromosomes[offset + i] = randomShift();
             }
-            attackArrays.add(attackArray);
         }
 
-        double candidateFitness = 0;
 
-        // Sort by new sending times
-        for (SortableAttack[] attackArray : attackArrays) {
-            Arrays.sort(attackArray);
-        }
-
-        // Sum interval values
-        // If any of the values is zero, the fitness of this chromosome is zero
-        // (discourages solutions with impossible send windows)
-        for (SortableAttack[] attackArray : attackArrays) {
-            for (int i = 0; i < attackArray.length-1; i++) {
-                LocalDateTime send1 = attackArray[i].sendingTime;
-                LocalDateTime send2 = attackArray[i+1].sendingTime;
-                long interval = ChronoUnit.SECONDS.between(send1, send2);
-                double value = value(interval, attackArray[i+1].waves);
-                if (value < 0.001) return 0.0;
-                candidateFitness += value;
+        /**
+         * Picks a parent for the next generation.
+         * @param fitnessValues fitness values of the generation, or the alias table built over them for roulette
+         * @return index of the parent
+         */
+        private int select(double[] fitnessValues) {
+            if (selection == Selection.ROULETTE) return aliasTable.sample(random);
+            int best = random.nextInt(size);
+            for (int i = 1; i < tournamentSize; i++) {
+                int contestant = random.nextInt(size);
+                if (fitnessValues[contestant] > fitnessValues[best]) best = contestant;
             }
+            return best;
         }
-        return candidateFitness;
-    }
-
 
-    /**
-     * Computes the value of the sending time interval based on deviation from the optimum.
-     * TODO make all parameters changeable settings
-     * @param interval interval to be evaluated
-     * @param waves waves to be set for the next send
-     * @return value of this interval, between 0 and bestValue (both inclusive)
-     */
-    public double value(long interval, int waves) {
-        // Cutoff
-        if (interval < 30) return 0.0;
-        long diff = interval - optimalInterval(waves);
-        // Discounting
-        if (diff < -4L) return Math.max(0, bestValue - Math.pow(diff+4, 2) / 4);
-        if (diff > 54L) return baseValueRatio * bestValue + (1-baseValueRatio) * bestValue / (diff-54);
-        // Flat peak; in a certain window around the optimal interval we do not care about the actual seconds
-        return bestValue;
-    }
-
-
-    /**
-     * Optimal interval for sends is defined by a base value
-     * and the amount of waves the player needs to set for the next send.
-     * 60s + 5s per wave is used as an optimal interval,
-     * so 65s for a single attack, 80s for a 4-wave attack, and 1min30s for a 8-wave attack.
-     * @param waves the amount of waves
-     * @return the optimal sending interval
-     */
-    private static long optimalInterval(int waves) {
-        return 60L + 5 * waves;
-    }
 
-
-    /**
-     * Returns the smallest interval in a chromosome.
-     * @param chromosome map from target coordId to landing time shift
-     */
-    public long smallestInterval(Map<Integer, Long> chromosome) {
-
-        List<SortableAttack[]> attackArrays = new ArrayList<>();
-
-        // Insert candidate values
-        for (List<Attack> attackList : attacksPerPlayer.values()) {
-            SortableAttack[] attackArray = new SortableAttack[attackList.size()];
-            for (int i = 0; i < attackList.size(); i++) {
-                attackList.get(i).setLandingTime(
-                        operation.getDefaultLandingTime()
-                                .plusSeconds(chromosome.get(attackList.get(i).getTarget().getCoordId()))
-                );
-                attackArray[i] = new SortableAttack(
-                        attackList.get(i).getTarget().getCoordId(),
-                        attackList.get(i).getSendingTime(),
-                        attackList.get(i).getWaves()
-                );
+        /**
+         * Simple argmax to find the fittest chromosome.
+         */
+        private int findBest(double[] fitnessValues) {
+            int bestIdx = 0;
+            for (int i = 1; i < size; i++) {
+                if (fitnessValues[i] > fitnessValues[bestIdx]) {
+                    bestIdx = i;
+                }
             }
-            attackArrays.add(attackArray);
+            return bestIdx;
         }
 
-        long smallest = Integer.MAX_VALUE;
 
-        // Sort by new sending times
-        for (SortableAttack[] attackArray : attackArrays) {
-            Arrays.sort(attackArray);
-        }
-
-        // Find the smallest
-        for (SortableAttack[] attackArray : attackArrays) {
-            for (int i = 0; i < attackArray.length-1; i++) {
-                LocalDateTime send1 = attackArray[i].sendingTime;
-                LocalDateTime send2 = attackArray[i+1].sendingTime;
-                long interval = ChronoUnit.SECONDS.between(send1, send2);
-                if (interval < smallest) smallest = interval;
+        /**
+         * Hill climbs from a chromosome by moving one landing time at a time, keeping moves that improve
+         * the fitness without making the smallest interval smaller.
+         * Each move re-scores only the players attacking the moved target.
+         * @param state chromosome to improve, left at the best found
+         * @param fitness fitness of the chromosome
+         * @param smallest smallest interval of the chromosome
+         * @return true if the chromosome was improved
+         */
+        private boolean localSearch(ScheduleState state, double fitness, long smallest) {
+            boolean improved = false;
+            int step = Math.max(1, problem.getWindow() / 10);
+            for (int m = 0; m < LOCAL_SEARCH_MOVES * problem.targetCount(); m++) {
+                int target = random.nextInt(problem.targetCount());
+                int old = state.gene(target);
+                int shift = random.nextDouble() < PROB_MUTATION
+                        ? randomShift()
+                        : old + random.nextInt(2 * step + 1) - step;
+                if (shift == old || Math.abs(shift) > problem.getWindow()) continue;
+                state.set(target, shift);
+                double newFitness = state.fitness();
+                long newSmallest = state.smallestInterval();
+                if (newFitness > fitness && newSmallest >= smallest) {
+                    fitness = newFitness;
+                    smallest = newSmallest;
+                    improved = true;
+                } else {
+                    state.set(target, old);
+                }
             }
+            return improved;
         }
-        return smallest;
-    }
 
 
-    /**
-     * Simple argmax to find the fittest chromosome.
-     */
-    private int findBest(double[] fitnessValues) {
-        int bestIdx = 0;
-        for (int i = 1; i < POPULATION_SIZE; i++) {
-            if (fitnessValues[i] > fitnessValues[bestIdx]) {
-                bestIdx = i;
+        /**
+         * Performs a crossover with the given parents.
+         * @param chromosomes population array of the parents
+         * @param parent1 start of the first parent
+         * @param parent2 start of the second parent
+         * @param offspring population array to write the offspring to
+         * @param offset start of the offspring
+         */
+        private void crossover(int[] chromosomes, int parent1, int parent2, int[] offspring, int offset) {
+            int genes = problem.targetCount();
+            int crosspoint1 = random.nextInt(genes);
+            int crosspoint2 = random.nextInt(genes);
+            System.arraycopy(chromosomes, parent2, offspring, offset, genes);
+            if (crosspoint1 < crosspoint2) {
+                System.arraycopy(chromosomes, parent1 + crosspoint1, offspring, offset + crosspoint1, crosspoint2 - crosspoint1);
             }
         }
-        return bestIdx;
-    }
-
-
-    /**
-     * Performs a crossover with the given parents.
-     * @param parent1 first parent
-     * @param parent2 second parent
-     * @return the offspring
-     */
-    private Map<Integer, Long> crossover(Map<Integer, Long> parent1, Map<Integer, Long> parent2) {
-        Map<Integer, Long> offspring = new HashMap<>();
-        int crosspoint1 = random.nextInt(targetList.size());
-        int crosspoint2 = random.nextInt(targetList.size());
-        for (int i = 0; i < crosspoint1; i++) {
-            offspring.put(targetList.get(i), parent2.get(targetList.get(i)));
-        }
-        for (int i = crosspoint1; i < crosspoint2; i++) {
-            offspring.put(targetList.get(i), parent1.get(targetList.get(i)));
-        }
-        for (int i = crosspoint2; i < targetList.size(); i++) {
-            offspring.put(targetList.get(i), parent2.get(targetList.get(i)));
-        }
-        return offspring;
-    }
 
 
-    /**
-     * Introduces small random tweaks to a chromosome to discover possible nearby improvements.
-     * @param original map from target coordId to landing time shift
-     */
-    private Map<Integer, Long> tweak(Map<Integer, Long> original) {
-        Map<Integer, Long> tweaked = new HashMap<>();
-        for (Integer t_coordId : targetList) {
-            long randomShift = random.nextInt(operation.getRandomShiftWindow() / 10);
-            long shift = 0;
-            int die = random.nextInt(3);
-            if (die == 1) {
-                shift -= randomShift;
-            }
-            if (die == 2) {
-                shift += randomShift;
-            }
-            long newTiming = original.get(t_coordId) + shift;
-            if (Math.abs(newTiming) > operation.getRandomShiftWindow()) {
-                newTiming = original.get(t_coordId);
+        /**
+         * Introduces small random tweaks to a chromosome to discover possible nearby improvements.
+         * @param original chromosome to tweak
+         * @param tweaked population array to write the tweaked chromosome to
+         * @param offset start of the tweaked chromosome
+         */
+        private void tweak(int[] original, int[] tweaked, int offset) {
+            for (int i = 0; i < problem.targetCount(); i++) {
+                int randomShift = random.nextInt(Math.max(1, problem.getWindow() / 10));
+                int shift = 0;
+                int die = random.nextInt(3);
+                if (die == 1) {
+                    shift -= randomShift;
+                }
+                if (die == 2) {
+                    shift += randomShift;
+                }
+                int newTiming = original[i] + shift;
+                if (Math.abs(newTiming) > problem.getWindow()) {
+                    newTiming = original[i];
+                }
+                tweaked[offset + i] = newTiming;
             }
-            tweaked.put(
-                    t_coordId,
-                    newTiming
-            );
-        }
-        return tweaked;
-    }
-
-
-    /**
-     * Makes a deep copy of a chromosome.
-     * @param original map from target coordId to landing time shift
-     */
-    private Map<Integer, Long> copy(Map<Integer, Long> original) {
-        Map<Integer, Long> copy = new HashMap<>();
-        for (Integer t_coordId : targetList) {
-            copy.put(t_coordId, original.get(t_coordId));
         }
-        return copy;
     }
-
 }
@@ -0,0 +1,73 @@
+package planner.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads map.sql from a server and streams it into MapSqlImporter.
+ * Lines are imported as they arrive, so only the current read buffer is held in memory.
+ */
+public class MapSqlDownloader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    /**
+     * Downloads map.sql and brings x_world up to date with it.
+     * Asks for gzip and decompresses the response if the server sent it compressed.
+     * @param uri address of map.sql
+     * @return villages that were added, changed or removed
+     * @throws IOException if the download fails or the server does not return 200
+     * @throws SQLException if the import fails, in which case x_world is unchanged
+     */
+    public static WorldDiff download(URI uri) throws IOException, InterruptedException, SQLException {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Accept", "application/octet-stream")
+                .header("Accept-Encoding", "gzip")
+                .build();
+        HttpResponse<InputStream> res = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build()
+                .send(req, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = res.body()) {
+            if (res.statusCode() != 200) {
+                throw new IOException("Downloading " + uri + " failed with status " + res.statusCode());
+            }
+            boolean gzip = res.headers().firstValue("Content-Encoding")
+                    .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                    .orElse(false);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(decompress(body, gzip), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                return MapSqlImporter.importMapSql(reader);
+            }
+        }
+    }
+
+
+    /**
+     * Wraps the stream in a GZIPInputStream if it is gzip compressed.
+     * Some servers serve map.sql.gz contents without a Content-Encoding header, so the magic bytes are checked too.
+     */
+    static InputStream decompress(InputStream in, boolean gzip) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        if (!gzip) {
+            buffered.mark(2);
+            int b1 = buffered.read();
+            int b2 = buffered.read();
+            buffered.reset();
+            gzip = b1 == 0x1f && b2 == 0x8b;
+        }
+        return gzip ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+    }
+}
@@ -0,0 +1,171 @@
+package planner.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import planner.App;
+import planner.Database;
+import planner.entities.TargetVillage;
+
+/**
+ * Imports a map.sql file into x_world.
+ * The tuples are parsed here and bound to one prepared insert, executed in batches in a single transaction.
+ * Rows go to a staging table which is compared with x_world by coordId,
+ * and only the new, changed and removed villages are written. A failed import leaves the old map in place.
+ */
+public class MapSqlImporter {
+
+    public static final String STAGING_TABLE = "x_world_import";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT = "INSERT OR REPLACE INTO " + STAGING_TABLE +
+            " VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final int COLUMNS = 16;
+
+    private static final String CHANGED = "i.xCoord IS NOT w.xCoord OR i.yCoord IS NOT w.yCoord " +
+            "OR i.tribe IS NOT w.tribe OR i.villageId IS NOT w.villageId OR i.villageName IS NOT w.villageName " +
+            "OR i.playerId IS NOT w.playerId OR i.playerName IS NOT w.playerName " +
+            "OR i.allyId IS NOT w.allyId OR i.allyName IS NOT w.allyName " +
+            "OR i.population IS NOT w.population OR i.unused1 IS NOT w.unused1 OR i.capital IS NOT w.capital " +
+            "OR i.unused2 IS NOT w.unused2 OR i.unused3 IS NOT w.unused3 OR i.unused4 IS NOT w.unused4";
+
+    private static final String UPSERTS = "SELECT i.*, w.coordId AS existing FROM " + STAGING_TABLE + " i " +
+            "LEFT JOIN x_world w ON i.coordId = w.coordId " +
+            "WHERE w.coordId IS NULL OR " + CHANGED;
+
+    private static final String REMOVED = "SELECT coordId FROM x_world " +
+            "WHERE coordId NOT IN (SELECT coordId FROM " + STAGING_TABLE + ")";
+
+
+    /**
+     * Reads map.sql from the reader and brings x_world up to date with it.
+     * If no rows could be read, x_world is left unchanged.
+     * @param reader map.sql contents
+     * @return villages that were added, changed or removed
+     * @throws IOException if reading fails
+     * @throws SQLException if writing fails, in which case nothing is changed
+     */
+    public static WorldDiff importMapSql(BufferedReader reader) throws IOException, SQLException {
+        WorldDiff[] diff = {null};
+        IOException[] readError = {null};
+        try {
+            Database.transaction(() -> {
+                // The staging table is kept and emptied, as dropping tables fails while
+                // other statements on the shared connection have unfinished reads
+                Database.execute(Database.worldTable(STAGING_TABLE));
+                Database.execute("DELETE FROM " + STAGING_TABLE);
+                int rows;
+                try {
+                    rows = stage(reader);
+                } catch (IOException e) {
+                    readError[0] = e;
+                    throw new SQLException("Reading map.sql failed", e);
+                }
+                diff[0] = new WorldDiff(rows);
+                if (rows > 0) {
+                    applyStaged(diff[0]);
+                }
+                Database.execute("DELETE FROM " + STAGING_TABLE);
+            });
+        } catch (SQLException e) {
+            // The transaction has been rolled back; report the original read failure if that was the cause
+            if (readError[0] != null) throw readError[0];
+            throw e;
+        }
+        return diff[0];
+    }
+
+
+    /**
+     * Compares the staging table with x_world and writes the differences.
+     * @param diff collects the affected villages
+     */
+    private static void applyStaged(WorldDiff diff) throws SQLException {
+        ResultSet removed = Database.query(REMOVED);
+        while (removed.next()) {
+            diff.getRemoved().add(removed.getInt("coordId"));
+        }
+        PreparedStatement delete = Database.prepare("DELETE FROM x_world WHERE coordId=?");
+        for (int coordId : diff.getRemoved()) {
+            delete.setInt(1, coordId);
+            delete.addBatch();
+        }
+        delete.executeBatch();
+
+        ResultSet upserts = Database.query(UPSERTS);
+        while (upserts.next()) {
+            TargetVillage village = new TargetVillage(upserts);
+            if (upserts.getObject("existing") == null) {
+                diff.getInserted().put(village.getCoordId(), village);
+            } else {
+                diff.getChanged().put(village.getCoordId(), village);
+            }
+        }
+        if (!diff.getInserted().isEmpty() || !diff.getChanged().isEmpty()) {
+            Database.execute("INSERT OR REPLACE INTO x_world SELECT i.* FROM " + STAGING_TABLE + " i " +
+                    "LEFT JOIN x_world w ON i.coordId = w.coordId " +
+                    "WHERE w.coordId IS NULL OR " + CHANGED);
+        }
+    }
+
+
+    /**
+     * Inserts all rows from the reader into the staging table.
+     * @return number of rows inserted
+     */
+    private static int stage(BufferedReader reader) throws IOException, SQLException {
+        PreparedStatement insert = Database.prepare(INSERT);
+        int rows = 0;
+        int batched = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            List<Object[]> tuples;
+            try {
+                tuples = MapSqlParser.parse(line);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping malformed map.sql line: " + e.getMessage());
+                continue;
+            }
+            for (Object[] tuple : tuples) {
+                if (tuple.length != COLUMNS) {
+                    System.out.println("Skipping map.sql row with " + tuple.length + " columns");
+                    continue;
+                }
+                for (int i = 0; i < COLUMNS; i++) {
+                    insert.setObject(i + 1, tuple[i]);
+                }
+                insert.addBatch();
+                rows++;
+                if (++batched == BATCH_SIZE) {
+                    insert.executeBatch();
+                    batched = 0;
+                }
+            }
+        }
+        if (batched > 0) insert.executeBatch();
+        return rows;
+    }
+
+
+    /**
+     * Stores the current time as the last map update.
+     * @return update time as shown in the UI
+     */
+    public static String markUpdated() throws SQLException {
+        String updateInfo = LocalDateTime.now().format(App.FULL_DATE_TIME);
+        Database.transaction(() -> {
+            Database.execute("DELETE FROM updated");
+            PreparedStatement updated = Database.prepare("INSERT INTO updated VALUES (?)");
+            updated.setString(1, updateInfo);
+            updated.execute();
+        });
+        return updateInfo;
+    }
+}
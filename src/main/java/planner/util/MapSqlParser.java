@@ -0,0 +1,128 @@
+package planner.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the VALUES tuples of the INSERT statements in a Travian map.sql file,
+ * so that they can be bound to a prepared statement instead of executing every line as SQL.
+ */
+public class MapSqlParser {
+
+
+    /**
+     * Parses all tuples of one map.sql line.
+     * Numbers are returned as Long or Double, strings unescaped,
+     * TRUE/FALSE as 1L/0L like SQLite reads them, and NULL as null.
+     * @param line line from map.sql, for example
+     *             INSERT INTO `x_world` VALUES (1,-200,200,1,1,'Name',1,'Player',0,'',50,NULL,FALSE,NULL,NULL,NULL);
+     * @return tuples in the line, empty if the line is not an INSERT statement
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static List<Object[]> parse(String line) throws IllegalArgumentException {
+
+        List<Object[]> tuples = new ArrayList<>();
+        int pos = valuesStart(line);
+        if (pos < 0) return tuples;
+
+        List<Object> values = new ArrayList<>(16);
+        int length = line.length();
+        while (true) {
+            pos = skipWhitespace(line, pos);
+            if (pos >= length || line.charAt(pos) != '(') {
+                throw new IllegalArgumentException("Expected a tuple at " + pos + ": " + line);
+            }
+            pos++;
+            values.clear();
+            while (true) {
+                pos = skipWhitespace(line, pos);
+                if (pos >= length) throw new IllegalArgumentException("Unterminated tuple: " + line);
+                char c = line.charAt(pos);
+                if (c == '\'') {
+                    StringBuilder sb = new StringBuilder();
+                    pos++;
+                    while (true) {
+                        if (pos >= length) throw new IllegalArgumentException("Unterminated string: " + line);
+                        char s = line.charAt(pos);
+                        if (s == '\\' && pos + 1 < length) {
+                            sb.append(line.charAt(pos + 1));
+                            pos += 2;
+                        } else if (s == '\'') {
+                            if (pos + 1 < length && line.charAt(pos + 1) == '\'') {
+                                sb.append('\'');
+                                pos += 2;
+                            } else {
+                                pos++;
+                                break;
+                            }
+                        } else {
+                            sb.append(s);
+                            pos++;
+                        }
+                    }
+                    values.add(sb.toString());
+                } else {
+                    int end = pos;
+                    while (end < length && line.charAt(end) != ',' && line.charAt(end) != ')') end++;
+                    values.add(literal(line.substring(pos, end).trim(), line));
+                    pos = end;
+                }
+                pos = skipWhitespace(line, pos);
+                if (pos >= length) throw new IllegalArgumentException("Unterminated tuple: " + line);
+                if (line.charAt(pos) == ',') {
+                    pos++;
+                } else if (line.charAt(pos) == ')') {
+                    pos++;
+                    break;
+                } else {
+                    throw new IllegalArgumentException("Unexpected character at " + pos + ": " + line);
+                }
+            }
+            tuples.add(values.toArray());
+            // Several tuples may share one INSERT
+            pos = skipWhitespace(line, pos);
+            if (pos < length && line.charAt(pos) == ',') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return tuples;
+    }
+
+
+    /**
+     * Finds the position right after the VALUES keyword of an INSERT statement.
+     * @return position or -1 if this is not an INSERT line
+     */
+    private static int valuesStart(String line) {
+        int start = skipWhitespace(line, 0);
+        if (!line.regionMatches(true, start, "INSERT", 0, 6)) return -1;
+        for (int i = start + 6; i <= line.length() - 6; i++) {
+            if (line.charAt(i) == '\'') return -1;
+            if (line.regionMatches(true, i, "VALUES", 0, 6)) return i + 6;
+        }
+        return -1;
+    }
+
+
+    private static int skipWhitespace(String line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+        return pos;
+    }
+
+
+    private static Object literal(String token, String line) {
+        if (token.equalsIgnoreCase("NULL")) return null;
+        if (token.equalsIgnoreCase("TRUE")) return 1L;
+        if (token.equalsIgnoreCase("FALSE")) return 0L;
+        try {
+            if (token.contains(".") || token.contains("e") || token.contains("E")) {
+                return Double.parseDouble(token);
+            }
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value " + token + ": " + line);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package planner.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+
+/**
+ * Snapshot of the planned attacks of an operation, for evaluating landing time schedules
+ * without touching the attacks themselves. Attacks are grouped per player, and each attack is
+ * reduced to its target ordinal, its sending time relative to the landing time of the target, and waves.
+ * The snapshot does not change after it is taken, so it can be read from many threads.
+ */
+public class ScheduleProblem {
+
+    /**
+     * Low bits of a packed send that hold the waves; the rest is the sending time.
+     */
+    public static final int WAVE_BITS = 8;
+    public static final long WAVE_MASK = (1L << WAVE_BITS) - 1;
+
+    /**
+     * Target coordIds by ordinal; gene i of a chromosome is the landing time shift of target i.
+     */
+    private final int[] targets;
+
+    private final Map<Integer, Integer> ordinals = new LinkedHashMap<>();
+
+    /**
+     * Per player and attack: target ordinal.
+     */
+    private final int[][] genes;
+
+    /**
+     * Per player and attack: sending time minus landing time of the target, in seconds.
+     * Includes the landing time shift of the attack.
+     */
+    private final long[][] sendOffsets;
+
+    /**
+     * Per player and attack: waves.
+     */
+    private final int[][] waves;
+
+    /**
+     * Per player and attack: send offset shifted left by WAVE_BITS, with waves in the low bits.
+     * Adding a landing time shift shifted the same way gives a value that sorts by sending time
+     * and still carries the waves, so evaluation needs no objects.
+     */
+    private final long[][] packedSends;
+
+    /**
+     * Per target ordinal: players and attack indexes of the attacks on the target.
+     */
+    private final int[][] targetPlayers;
+    private final int[][] targetAttacks;
+
+    /**
+     * Largest amount of attacks of one player.
+     */
+    @Getter
+    private final int maxAttacks;
+
+    /**
+     * Default landing time of the operation in seconds from Converters.toEpochSecond.
+     */
+    @Getter
+    private final long defaultLandingTime;
+
+    /**
+     * Flex window in seconds; shifts are between -window and window.
+     */
+    @Getter
+    private final int window;
+
+
+    /**
+     * Takes a snapshot of the planned attacks of the operation with its flex window.
+     */
+    public ScheduleProblem(Operation operation) {
+        this(operation, operation.getRandomShiftWindow());
+    }
+
+
+    /**
+     * Takes a snapshot of the planned attacks of the operation.
+     * @param window flex window in seconds to use instead of the operation's
+     */
+    public ScheduleProblem(Operation operation, int window) {
+
+        this.defaultLandingTime = Converters.toEpochSecond(operation.getDefaultLandingTime());
+        this.window = window;
+
+        // Assemble attack lists player-wise
+        Map<Integer, List<Attack>> attacksPerPlayer = new LinkedHashMap<>();
+        for (AttackerVillage attackerVillage : operation.getAttackers()) {
+            if (!attacksPerPlayer.containsKey(attackerVillage.getPlayerId())) {
+                attacksPerPlayer.put(attackerVillage.getPlayerId(), new ArrayList<>());
+            }
+            for (Attack attack : attackerVillage.getPlannedAttacks()) {
+                attacksPerPlayer.get(attackerVillage.getPlayerId()).add(attack);
+                if (!ordinals.containsKey(attack.getTarget().getCoordId())) {
+                    ordinals.put(attack.getTarget().getCoordId(), ordinals.size());
+                }
+            }
+        }
+        targets = new int[ordinals.size()];
+        for (Map.Entry<Integer, Integer> entry : ordinals.entrySet()) {
+            targets[entry.getValue()] = entry.getKey();
+        }
+
+        int players = attacksPerPlayer.size();
+        genes = new int[players][];
+        sendOffsets = new long[players][];
+        waves = new int[players][];
+        packedSends = new long[players][];
+        int most = 0;
+        int p = 0;
+        for (List<Attack> attackList : attacksPerPlayer.values()) {
+            genes[p] = new int[attackList.size()];
+            sendOffsets[p] = new long[attackList.size()];
+            waves[p] = new int[attackList.size()];
+            packedSends[p] = new long[attackList.size()];
+            most = Math.max(most, attackList.size());
+            for (int i = 0; i < attackList.size(); i++) {
+                Attack attack = attackList.get(i);
+                genes[p][i] = ordinals.get(attack.getTarget().getCoordId());
+                sendOffsets[p][i] = attack.getLandingTimeShift() - attack.travelSeconds();
+                waves[p][i] = attack.getWaves();
+                packedSends[p][i] = pack(sendOffsets[p][i], waves[p][i]);
+            }
+            p++;
+        }
+        this.maxAttacks = most;
+
+        // Attacks per target, for finding the players affected by a gene
+        int[] counts = new int[targets.length];
+        for (int[] playerGenes : genes) {
+            for (int gene : playerGenes) counts[gene]++;
+        }
+        targetPlayers = new int[targets.length][];
+        targetAttacks = new int[targets.length][];
+        for (int t = 0; t < targets.length; t++) {
+            targetPlayers[t] = new int[counts[t]];
+            targetAttacks[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (p = 0; p < players; p++) {
+            for (int i = 0; i < genes[p].length; i++) {
+                int t = genes[p][i];
+                targetPlayers[t][counts[t]] = p;
+                targetAttacks[t][counts[t]] = i;
+                counts[t]++;
+            }
+        }
+    }
+
+
+    /**
+     * Packs a sending time and waves into one sortable value.
+     * Waves above WAVE_MASK are capped, which only matters for the optimal interval of absurd wave counts.
+     */
+    public static long pack(long sendingTime, int waves) {
+        return (sendingTime << WAVE_BITS) | Math.min(Math.max(waves, 0), WAVE_MASK);
+    }
+
+
+    /**
+     * @return sending time of a packed send
+     */
+    public static long sendingTime(long packed) {
+        return packed >> WAVE_BITS;
+    }
+
+
+    /**
+     * @return waves of a packed send
+     */
+    public static int waves(long packed) {
+        return (int) (packed & WAVE_MASK);
+    }
+
+
+    /**
+     * @return amount of genes in a chromosome
+     */
+    public int targetCount() {
+        return targets.length;
+    }
+
+
+    /**
+     * @return true if chromosomes of the other snapshot have the same genes, so they can be used in this one
+     */
+    public boolean sameTargets(ScheduleProblem other) {
+        return Arrays.equals(targets, other.targets);
+    }
+
+
+    /**
+     * @return coordId of the target with the ordinal
+     */
+    public int target(int ordinal) {
+        return targets[ordinal];
+    }
+
+
+    /**
+     * @return ordinal of the target or -1 if it is not in the plan
+     */
+    public int ordinal(int coordId) {
+        Integer ordinal = ordinals.get(coordId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+
+    public int playerCount() {
+        return genes.length;
+    }
+
+
+    /**
+     * @return target ordinals of the player's attacks; not to be modified
+     */
+    public int[] genes(int player) {
+        return genes[player];
+    }
+
+
+    /**
+     * @return sending times of the player's attacks relative to the landing times of their targets; not to be modified
+     */
+    public long[] sendOffsets(int player) {
+        return sendOffsets[player];
+    }
+
+
+    /**
+     * @return waves of the player's attacks; not to be modified
+     */
+    public int[] waves(int player) {
+        return waves[player];
+    }
+
+
+    /**
+     * @return packed sends of the player's attacks relative to the landing times of their targets; not to be modified
+     */
+    public long[] packedSends(int player) {
+        return packedSends[player];
+    }
+
+
+    /**
+     * @return players of the attacks on the target, in player order; a player appears once per attack
+     */
+    public int[] targetPlayers(int ordinal) {
+        return targetPlayers[ordinal];
+    }
+
+
+    /**
+     * @return indexes of the attacks on the target within their players' attacks, matching targetPlayers
+     */
+    public int[] targetAttacks(int ordinal) {
+        return targetAttacks[ordinal];
+    }
+}
@@ -0,0 +1,182 @@
+package planner.util;
+
+import java.util.Arrays;
+
+/**
+ * Fitness of one chromosome, kept up to date while its genes are changed one at a time.
+ * Every player's sends are kept sorted; changing a gene moves the sends of the attacks on
+ * that target within their players' lists and re-scores only those players.
+ * Scores are the same as in Scheduler.fitness, up to rounding of the sum.
+ * Not to be shared between threads.
+ */
+public class ScheduleState {
+
+    private final ScheduleProblem problem;
+
+    private final AbstractScheduler scorer;
+
+    private final int[] chromosome;
+
+    /**
+     * Per player: packed sends relative to the default landing time, in sending order.
+     */
+    private final long[][] sends;
+
+    /**
+     * Per player: sum of interval values, intervals with zero value and the smallest interval.
+     */
+    private final double[] playerValues;
+    private final int[] playerZeros;
+    private final long[] playerSmallest;
+
+
+    public ScheduleState(ScheduleProblem problem, AbstractScheduler scorer) {
+        this.problem = problem;
+        this.scorer = scorer;
+        this.chromosome = new int[problem.targetCount()];
+        this.sends = new long[problem.playerCount()][];
+        for (int p = 0; p < problem.playerCount(); p++) {
+            sends[p] = new long[problem.genes(p).length];
+        }
+        this.playerValues = new double[problem.playerCount()];
+        this.playerZeros = new int[problem.playerCount()];
+        this.playerSmallest = new long[problem.playerCount()];
+    }
+
+
+    /**
+     * Replaces the state with a chromosome of a population array.
+     * @param chromosomes population array
+     * @param offset start of the chromosome in the array
+     */
+    public void load(int[] chromosomes, int offset) {
+        System.arraycopy(chromosomes, offset, chromosome, 0, chromosome.length);
+        for (int p = 0; p < problem.playerCount(); p++) {
+            int[] attackGenes = problem.genes(p);
+            long[] packedSends = problem.packedSends(p);
+            for (int i = 0; i < attackGenes.length; i++) {
+                sends[p][i] = packedSends[i] + ((long) chromosome[attackGenes[i]] << ScheduleProblem.WAVE_BITS);
+            }
+            Arrays.sort(sends[p]);
+            score(p);
+        }
+    }
+
+
+    /**
+     * Writes the current chromosome to a population array.
+     */
+    public void copyTo(int[] chromosomes, int offset) {
+        System.arraycopy(chromosome, 0, chromosomes, offset, chromosome.length);
+    }
+
+
+    /**
+     * @return landing time shift of the target
+     */
+    public int gene(int ordinal) {
+        return chromosome[ordinal];
+    }
+
+
+    /**
+     * Changes the landing time shift of one target and re-scores the players attacking it.
+     * @param ordinal target ordinal
+     * @param shift new landing time shift
+     */
+    public void set(int ordinal, int shift) {
+        long delta = (long) (shift - chromosome[ordinal]) << ScheduleProblem.WAVE_BITS;
+        if (delta == 0) return;
+        int[] players = problem.targetPlayers(ordinal);
+        int[] attacks = problem.targetAttacks(ordinal);
+        for (int a = 0; a < players.length; a++) {
+            long old = problem.packedSends(players[a])[attacks[a]]
+                    + ((long) chromosome[ordinal] << ScheduleProblem.WAVE_BITS);
+            move(sends[players[a]], old, old + delta);
+            // Players are in order, so a player is re-scored once after its last attack on the target
+            if (a == players.length - 1 || players[a + 1] != players[a]) score(players[a]);
+        }
+        chromosome[ordinal] = shift;
+    }
+
+
+    /**
+     * Moves a value to its sorted position in a sorted array.
+     */
+    private static void move(long[] sorted, long from, long to) {
+        int i = Arrays.binarySearch(sorted, from);
+        if (to > from) {
+            while (i < sorted.length - 1 && sorted[i + 1] < to) {
+                sorted[i] = sorted[i + 1];
+                i++;
+            }
+        } else {
+            while (i > 0 && sorted[i - 1] > to) {
+                sorted[i] = sorted[i - 1];
+                i--;
+            }
+        }
+        sorted[i] = to;
+    }
+
+
+    /**
+     * Recomputes the interval values of a player.
+     */
+    private void score(int player) {
+        long[] playerSends = sends[player];
+        double sum = 0;
+        int zeros = 0;
+        long smallest = Integer.MAX_VALUE;
+        for (int i = 0; i < playerSends.length-1; i++) {
+            long interval = ScheduleProblem.sendingTime(playerSends[i+1]) - ScheduleProblem.sendingTime(playerSends[i]);
+            double value = scorer.tableValue(interval, ScheduleProblem.waves(playerSends[i+1]));
+            if (value < 0.001) zeros++;
+            sum += value;
+            if (interval < smallest) smallest = interval;
+        }
+        playerValues[player] = sum;
+        playerZeros[player] = zeros;
+        playerSmallest[player] = smallest;
+    }
+
+
+    /**
+     * @return fitness of the current chromosome; zero if any interval has zero value
+     */
+    public double fitness() {
+        double fitness = 0;
+        for (int p = 0; p < playerValues.length; p++) {
+            if (playerZeros[p] > 0) return 0.0;
+            fitness += playerValues[p];
+        }
+        return fitness;
+    }
+
+
+    /**
+     * Fitness for searching out of schedules with conflicts: each interval with zero value
+     * costs the penalty instead of zeroing the whole schedule.
+     * @param penalty cost of an interval with zero value
+     * @return sum of interval values less the penalties; equals fitness() if there are no conflicts
+     */
+    public double penalisedFitness(double penalty) {
+        double fitness = 0;
+        for (int p = 0; p < playerValues.length; p++) {
+            fitness += playerValues[p] - penalty * playerZeros[p];
+        }
+        return fitness;
+    }
+
+
+    /**
+     * @return smallest interval of the current chromosome
+     */
+    public long smallestInterval() {
+        long smallest = Integer.MAX_VALUE;
+        for (long playerMin : playerSmallest) {
+            if (playerMin < smallest) smallest = playerMin;
+        }
+        return smallest;
+    }
+}
@@ -0,0 +1,80 @@
+package planner.util;
+
+import java.time.Duration;
+import java.util.Map;
+
+import javafx.beans.property.DoubleProperty;
+
+import planner.entities.Operation;
+
+/**
+ * Optimises the landing times of an operation so that sending times do not conflict
+ * but are nicely clustered. All engines score a schedule the same way: the sum of the values
+ * of the sending intervals of each player, or zero if any interval has no value.
+ */
+public interface Scheduler {
+
+    /**
+     * Creates an engine for an operation; matches the constructors of the engines.
+     */
+    interface Factory {
+        Scheduler create(Operation operation, double bestValue, double baseValueRatio);
+    }
+
+    /**
+     * Schedules the operation with its flex window, without a time limit.
+     * @return map from target coordId to landing time shift
+     * or null if the attacks could not be scheduled.
+     * @throws IllegalStateException if there are no attacks to schedule or no flex window
+     */
+    Map<Integer, Long> schedule() throws IllegalStateException;
+
+    /**
+     * Schedules the operation with its flex window.
+     * @param budget wall-clock time for the run, or null for no limit
+     * @return map from target coordId to landing time shift
+     * or null if the attacks could not be scheduled.
+     * @throws IllegalStateException if there are no attacks to schedule or no flex window
+     */
+    Map<Integer, Long> schedule(Duration budget) throws IllegalStateException;
+
+    /**
+     * Schedules a snapshot of the operation, for instance one with a different flex window.
+     * Snapshots can be taken beforehand so that several schedulers can run at the same time.
+     * @param problem attacks to schedule
+     * @param budget wall-clock time for the run, or null for no limit
+     * @return map from target coordId to landing time shift
+     * or null if the attacks could not be scheduled.
+     * @throws IllegalStateException if there are no attacks to schedule or no flex window
+     */
+    Map<Integer, Long> schedule(ScheduleProblem problem, Duration budget) throws IllegalStateException;
+
+    /**
+     * @param candidate map from target coordId to landing time shift
+     * @return fitness of the candidate
+     */
+    double fitness(Map<Integer, Long> candidate);
+
+    /**
+     * @param candidate map from target coordId to landing time shift
+     * @return smallest sending interval of any player
+     */
+    long smallestInterval(Map<Integer, Long> candidate);
+
+    /**
+     * @param interval sending interval in seconds
+     * @param waves waves to be set for the next send
+     * @return value of the interval
+     */
+    double value(long interval, int waves);
+
+    /**
+     * @return progress of the current run from 0 to 1
+     */
+    DoubleProperty getProgress();
+
+    /**
+     * Stops a run early once a schedule at least this fit is found.
+     */
+    void setTargetFitness(double targetFitness);
+}
@@ -0,0 +1,134 @@
+package planner.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Daily time range in which a participant is able to send, parsed from the sendmin and sendmax
+ * strings of the participant sheet, e.g. "13:00:00" - "00:00:00". A window that ends before it starts
+ * goes over midnight. Times are in the seconds of Converters.toEpochSecond.
+ */
+public class SendWindow {
+
+    private static final int DAY = 24 * 60 * 60;
+
+    /**
+     * Window without restrictions.
+     */
+    public static final SendWindow ALWAYS = new SendWindow(0, DAY);
+
+    /**
+     * Second of day when the window opens.
+     */
+    @Getter
+    private final int start;
+
+    /**
+     * Second of day when the window closes, inclusive. Smaller than start if the window goes over midnight.
+     */
+    @Getter
+    private final int end;
+
+
+    public SendWindow(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Parses the earliest and latest send times of a participant.
+     * Accepted formats are H, H:mm and H:mm:ss, also with a dot as the separator.
+     * A missing or unreadable time leaves that end open, and equal times mean the whole day.
+     * @param sendMin earliest send time of day or null
+     * @param sendMax latest send time of day or null
+     * @return the window
+     */
+    public static SendWindow parse(String sendMin, String sendMax) {
+        int start = secondOfDay(sendMin, 0);
+        int end = secondOfDay(sendMax, DAY);
+        if (start == end || (start == 0 && end == DAY)) return ALWAYS;
+        return new SendWindow(start, end);
+    }
+
+
+    /**
+     * @param time time of day
+     * @param missing value for a blank time
+     * @return second of day, or the missing value if the time can not be read
+     */
+    private static int secondOfDay(String time, int missing) {
+        if (time == null || time.trim().isEmpty()) return missing;
+        String[] parts = time.trim().split("[:.]");
+        if (parts.length > 3) {
+            System.out.println("Could not read send time " + time);
+            return missing;
+        }
+        int second = 0;
+        int[] units = {3600, 60, 1};
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                int value = Integer.parseInt(parts[i]);
+                if (value < 0 || (i == 0 && value > 24) || (i > 0 && value > 59)) {
+                    System.out.println("Could not read send time " + time);
+                    return missing;
+                }
+                second += value * units[i];
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Could not read send time " + time);
+            return missing;
+        }
+        return Math.min(second, DAY);
+    }
+
+
+    public boolean isAlways() {
+        return this == ALWAYS;
+    }
+
+
+    /**
+     * @param time seconds from Converters.toEpochSecond
+     * @return true if sending at the time is inside the window
+     */
+    public boolean contains(long time) {
+        int second = (int) Math.floorMod(time, (long) DAY);
+        if (start <= end) return second >= start && second <= end;
+        return second >= start || second <= end;
+    }
+
+
+    /**
+     * Lists the times between from and to when the window is open.
+     * @param from seconds from Converters.toEpochSecond
+     * @param to seconds from Converters.toEpochSecond, inclusive
+     * @return inclusive ranges {open, close} in ascending order
+     */
+    public List<long[]> occurrences(long from, long to) {
+        List<long[]> occurrences = new ArrayList<>();
+        if (from > to) return occurrences;
+        if (isAlways()) {
+            occurrences.add(new long[] {from, to});
+            return occurrences;
+        }
+        // Start a day early to catch a window that opened yesterday and goes over midnight
+        for (long day = Math.floorDiv(from, DAY) * DAY - DAY; day <= to; day += DAY) {
+            long open = day + start;
+            long close = start <= end ? day + end : day + DAY + end;
+            if (close < from || open > to) continue;
+            occurrences.add(new long[] {Math.max(open, from), Math.min(close, to)});
+        }
+        return occurrences;
+    }
+
+
+    @Override
+    public String toString() {
+        if (isAlways()) return "any time";
+        return String.format("%02d:%02d:%02d - %02d:%02d:%02d",
+                start / 3600, start / 60 % 60, start % 60, end / 3600 % 24, end / 60 % 60, end % 60);
+    }
+}
@@ -0,0 +1,134 @@
+package planner.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import planner.entities.Operation;
+
+/**
+ * Optimises the landing times by tabu search. Each iteration tries a sample of moves of single
+ * landing times and takes the best one even if it makes the schedule worse. A moved target
+ * may not move again for a while unless that gives a new best, which keeps the search
+ * from circling back. Intervals with zero value are penalised as in annealing.
+ */
+public class TabuScheduler extends AbstractScheduler {
+
+    private static final double PROB_JUMP = 0.1;
+    private static final int PROGRESS_STEPS = 100;
+
+    /**
+     * Iterations in a run per target.
+     */
+    @Getter
+    @Setter
+    private int iterationsPerTarget = 200;
+
+    /**
+     * Moves tried per iteration.
+     */
+    @Getter
+    @Setter
+    private int candidates = 20;
+
+    /**
+     * Iterations a moved target stays tabu; 0 for a quarter of the targets.
+     */
+    @Getter
+    @Setter
+    private int tenure = 0;
+
+    private final Random random = new Random();
+
+
+    /**
+     * @param operation operation to be scheduled
+     * @param bestValue value for an optimal interval
+     * @param baseValueRatio proportion of the best value
+     */
+    public TabuScheduler(Operation operation, double bestValue, double baseValueRatio) {
+        super(operation, bestValue, baseValueRatio);
+    }
+
+
+    /**
+     * Searches from random landing times until the iterations or the time budget are used up,
+     * or the target fitness is reached.
+     */
+    @Override
+    public Map<Integer, Long> schedule(ScheduleProblem problem, Duration budget) throws IllegalStateException {
+
+        progress.set(0);
+        long start = System.nanoTime();
+        long deadline = budget == null ? Long.MAX_VALUE : start + budget.toNanos();
+
+        setProblem(problem);
+        System.out.println("--- Tabu scheduler started with " + problem.targetCount() + " targets");
+        if (problem.targetCount() == 0) throw new IllegalStateException("Could not read attacks");
+        if (problem.getWindow() == 0) throw new IllegalStateException("No flex window set");
+        System.out.println("--- Flex window: " + problem.getWindow());
+
+        int genes = problem.targetCount();
+        int window = problem.getWindow();
+        int step = Math.max(1, window / 10);
+        int tabuIterations = tenure > 0 ? tenure : Math.max(1, genes / 4);
+        int[] best = new int[genes];
+        for (int i = 0; i < genes; i++) {
+            best[i] = random.nextInt(window * 2) - window;
+        }
+        ScheduleState state = new ScheduleState(problem, this);
+        state.load(best, 0);
+        double bestFitness = state.fitness();
+        // Iteration from which each target may move again
+        int[] tabuUntil = new int[genes];
+
+        int iterations = iterationsPerTarget * genes;
+        int progressStep = iterations / PROGRESS_STEPS + 1;
+        for (int it = 0; it < iterations; it++) {
+
+            if (it % progressStep == 0) {
+                double elapsed = budget == null ? 0 : (double) (System.nanoTime() - start) / budget.toNanos();
+                progress.set(Math.min(1.0, Math.max((double) it / iterations, elapsed)));
+                if (System.nanoTime() >= deadline || bestFitness >= getTargetFitness()) break;
+            }
+
+            // Best of the sampled moves that are not tabu or that give a new best
+            int moveTarget = -1;
+            int moveShift = 0;
+            double moveScore = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < candidates; c++) {
+                int target = random.nextInt(genes);
+                int old = state.gene(target);
+                int shift = random.nextDouble() < PROB_JUMP
+                        ? random.nextInt(window * 2) - window
+                        : clamp(old + random.nextInt(2 * step + 1) - step);
+                if (shift == old) continue;
+                state.set(target, shift);
+                double score = state.penalisedFitness(bestValue);
+                boolean allowed = tabuUntil[target] <= it || state.fitness() > bestFitness;
+                state.set(target, old);
+                if (allowed && score > moveScore) {
+                    moveTarget = target;
+                    moveShift = shift;
+                    moveScore = score;
+                }
+            }
+            if (moveTarget < 0) continue;
+
+            state.set(moveTarget, moveShift);
+            tabuUntil[moveTarget] = it + tabuIterations;
+            double fitness = state.fitness();
+            if (fitness > bestFitness) {
+                bestFitness = fitness;
+                state.copyTo(best, 0);
+            }
+        }
+        progress.set(1.0);
+        System.out.println("--- Best found: " + bestFitness);
+        if (bestFitness < 0.001) return null;
+        return toMap(best);
+    }
+}
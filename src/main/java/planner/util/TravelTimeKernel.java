@@ -0,0 +1,141 @@
+package planner.util;
+
+/**
+ * Travel time arithmetic on a T4 (2019) Travian map, for one attack or for many targets at once.
+ * Attack.travelSeconds uses the scalar methods, so the batch results are identical to it.
+ * The batch loops work on primitive arrays without branches or allocation, so the JIT can unroll
+ * and vectorise them. Distances do not depend on speed, so they are computed once and reused
+ * for every unit speed.
+ */
+public class TravelTimeKernel {
+
+    /**
+     * Distance after which tournament square speeds up the troops.
+     */
+    public static final double TS_THRESHOLD = 20;
+
+
+    /**
+     * Distance on the torus surface, rounded to 5 decimal places as per Travian implementation.
+     * @param serverSize e.g. 200 for 401x401 map
+     */
+    public static double distance(int ax, int ay, int tx, int ty, int serverSize) {
+        int width = serverSize * 2 + 1;
+        int dx = Math.abs(ax - tx);
+        int dy = Math.abs(ay - ty);
+        dx = Math.min(dx, width - dx);
+        dy = Math.min(dy, width - dy);
+        return Math.round(Math.sqrt(dx * dx + dy * dy) * 100000) / 100000.0;
+    }
+
+
+    /**
+     * @param unitSpeed squares per hour of the slowest unit
+     * @param arteSpeed artefact multiplier, 1.0 without one
+     * @return baseline speed in squares per second
+     */
+    public static double squaresPerSecond(int unitSpeed, int serverSpeed, double arteSpeed) {
+        return unitSpeed * serverSpeed * arteSpeed / 60 / 60;
+    }
+
+
+    /**
+     * @param ts tournament square level
+     * @param heroBoots hero boots bonus in percent, 0 if the hero does not travel with the attack
+     * @return speed multiplier after the first 20 squares
+     */
+    public static double tsFactor(int ts, int heroBoots) {
+        double factor = 1.0 + ts * 0.2;
+        if (heroBoots != 0) factor += heroBoots / 100.0;
+        return factor;
+    }
+
+
+    /**
+     * @param distance rounded distance from distance()
+     * @param squaresPerSecond from squaresPerSecond()
+     * @param factor from tsFactor()
+     * @return travel time in seconds
+     */
+    public static long travelSeconds(double distance, double squaresPerSecond, double factor) {
+        if (distance <= TS_THRESHOLD) return Math.round(distance / squaresPerSecond);
+        double travelTime = TS_THRESHOLD / squaresPerSecond;
+        travelTime += (distance - TS_THRESHOLD) / (squaresPerSecond * factor);
+        return Math.round(travelTime);
+    }
+
+
+    /**
+     * Inverse of travelSeconds, for pruning by distance before computing exact travel times.
+     * @param seconds travel time
+     * @param squaresPerSecond from squaresPerSecond()
+     * @param factor from tsFactor()
+     * @return the longest distance that can be travelled in about that time; rounding may allow
+     * slightly more, so callers should leave a margin
+     */
+    public static double maxDistance(double seconds, double squaresPerSecond, double factor) {
+        if (seconds <= 0) return 0;
+        double slowDistance = seconds * squaresPerSecond;
+        if (slowDistance <= TS_THRESHOLD) return slowDistance;
+        return TS_THRESHOLD + (seconds - TS_THRESHOLD / squaresPerSecond) * squaresPerSecond * factor;
+    }
+
+
+    /**
+     * Distances from one village to many.
+     * @param tx x coordinates of the targets
+     * @param ty y coordinates of the targets
+     * @param count number of targets to compute
+     * @param out receives the rounded distances
+     */
+    public static void distances(int ax, int ay, int[] tx, int[] ty, int count, int serverSize, double[] out) {
+        int width = serverSize * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            int dx = Math.abs(ax - tx[i]);
+            int dy = Math.abs(ay - ty[i]);
+            dx = Math.min(dx, width - dx);
+            dy = Math.min(dy, width - dy);
+            out[i] = Math.round(Math.sqrt(dx * dx + dy * dy) * 100000) / 100000.0;
+        }
+    }
+
+
+    /**
+     * Travel times for many distances at one speed.
+     * @param distances from distances()
+     * @param count number of entries to compute
+     * @param squaresPerSecond from squaresPerSecond()
+     * @param factor from tsFactor()
+     * @param out receives travel times in seconds
+     */
+    public static void travelSeconds(double[] distances, int count, double squaresPerSecond, double factor, long[] out) {
+        double fastSquaresPerSecond = squaresPerSecond * factor;
+        double thresholdSeconds = TS_THRESHOLD / squaresPerSecond;
+        for (int i = 0; i < count; i++) {
+            double distance = distances[i];
+            double slow = distance / squaresPerSecond;
+            double fast = thresholdSeconds + (distance - TS_THRESHOLD) / fastSquaresPerSecond;
+            out[i] = Math.round(distance <= TS_THRESHOLD ? slow : fast);
+        }
+    }
+
+
+    /**
+     * Travel times from one attacker to many targets at several unit speeds.
+     * @param tx x coordinates of the targets
+     * @param ty y coordinates of the targets
+     * @param count number of targets
+     * @param unitSpeeds unit speeds to compute, one row of out for each
+     * @param factor from tsFactor()
+     * @param out receives travel times in seconds, out[speed][target]
+     */
+    public static void travelSeconds(int ax, int ay, int[] tx, int[] ty, int count,
+                                     int serverSize, int serverSpeed, double arteSpeed,
+                                     int[] unitSpeeds, double factor, long[][] out) {
+        double[] distances = new double[count];
+        distances(ax, ay, tx, ty, count, serverSize, distances);
+        for (int s = 0; s < unitSpeeds.length; s++) {
+            travelSeconds(distances, count, squaresPerSecond(unitSpeeds[s], serverSpeed, arteSpeed), factor, out[s]);
+        }
+    }
+}
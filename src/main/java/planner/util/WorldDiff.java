@@ -0,0 +1,47 @@
+package planner.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+import planner.entities.TargetVillage;
+
+/**
+ * Changes between two versions of x_world, keyed by coordId.
+ * Inserted and changed villages carry their new world data.
+ */
+public class WorldDiff {
+
+    @Getter
+    private final Map<Integer, TargetVillage> inserted = new HashMap<>();
+
+    @Getter
+    private final Map<Integer, TargetVillage> changed = new HashMap<>();
+
+    @Getter
+    private final Set<Integer> removed = new HashSet<>();
+
+    /**
+     * Amount of villages in the imported map.sql.
+     */
+    @Getter
+    private final int rows;
+
+
+    public WorldDiff(int rows) {
+        this.rows = rows;
+    }
+
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+
+    @Override
+    public String toString() {
+        return inserted.size() + " new, " + changed.size() + " changed, " + removed.size() + " removed villages";
+    }
+}
@@ -0,0 +1,29 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import planner.util.AliasTable;
+
+public class AliasTableTest {
+
+    @Test
+    public void samplesInProportionToWeights() {
+        double[] weights = {1, 0, 3, 0.5, 5.5};
+        double[] expected = {0.1, 0, 0.3, 0.05, 0.55};
+        AliasTable table = new AliasTable();
+        table.build(weights, weights.length);
+        Random random = new Random(1L);
+        int[] counts = new int[weights.length];
+        int samples = 1000000;
+        for (int i = 0; i < samples; i++) {
+            counts[table.sample(random)]++;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(expected[i], (double) counts[i] / samples, 0.003);
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.Test;
 import planner.entities.Attack;
 import planner.entities.AttackerVillage;
 import planner.entities.TargetVillage;
+import planner.util.Converters;
 
 public class AttackTest {
 
@@ -209,4 +210,40 @@ public class AttackTest {
         String send = "2020-04-10 10:26:30";
         assertEquals(LocalDateTime.parse(send, f), this.att.getSendingTime());
     }
+
+    @Test
+    public void cachedTTFollowsChanges() {
+        when(attacker.getXCoord()).thenReturn(-122);
+        when(attacker.getYCoord()).thenReturn(4);
+        when(target.getXCoord()).thenReturn(44);
+        when(target.getYCoord()).thenReturn(66);
+        this.att.setUnitSpeed(19);
+        when(attacker.getArteSpeed()).thenReturn(2.0);
+        this.att.setTs(0);
+        when(attacker.getHeroBoots()).thenReturn(0);
+        assertEquals(16787L, this.att.travelSeconds());
+        assertEquals(16787L, this.att.travelSeconds());
+        this.att.setTs(10);
+        assertEquals(6859L, this.att.travelSeconds());
+        when(attacker.getArteSpeed()).thenReturn(1.0);
+        assertEquals(13718L, this.att.travelSeconds());
+    }
+
+    @Test
+    public void epochSecondsMatchTimes() {
+        when(attacker.getXCoord()).thenReturn(-5);
+        when(attacker.getYCoord()).thenReturn(4);
+        when(target.getXCoord()).thenReturn(4);
+        when(target.getYCoord()).thenReturn(-1);
+        this.att.setUnitSpeed(19);
+        when(attacker.getArteSpeed()).thenReturn(2.0);
+        this.att.setTs(5);
+        when(attacker.getHeroBoots()).thenReturn(25);
+        this.att.setLandingTimeShift(-3);
+        assertEquals(Converters.toEpochSecond(landingTime) - 3, this.att.getLandingEpochSecond());
+        assertEquals(975L, this.att.getLandingEpochSecond() - this.att.getSendingEpochSecond());
+        assertEquals(LocalDateTime.parse("2020-04-11 11:43:42", f), this.att.getSendingTime());
+        this.att.setLandingEpochSecond(Converters.toEpochSecond(landingTime) + 60);
+        assertEquals(LocalDateTime.parse("2020-04-11 12:00:57", f), this.att.getLandingTime());
+    }
 }
@@ -0,0 +1,194 @@
+package planner;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.entities.Operation;
+import planner.util.FlexWindowSearch;
+import planner.util.GeneticScheduler;
+import planner.util.ScheduleProblem;
+import planner.util.Scheduler;
+
+public class FlexWindowSearchTest {
+
+    private Operation operation;
+
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticWorld.create(3000, 10, 1L);
+        operation = new Operation();
+        SyntheticWorld.planAttacks(operation, 15, 40, 1L);
+        operation.setRandomShiftWindow(600);
+    }
+
+    @After
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Test
+    public void findsSmallestWindowThatSucceeds() {
+        for (int parallelism : new int[] {1, 2, 3, 4, 7, 10, 16}) {
+            for (int smallest : new int[] {60, 240, 300, 600}) {
+                List<Integer> tried = Collections.synchronizedList(new ArrayList<>());
+                FlexWindowSearch search = new FlexWindowSearch(operation, 240.0, 0.8);
+                search.setParallelism(parallelism);
+                search.setEngine((op, bestValue, baseValueRatio) -> new StubScheduler(smallest, tried));
+
+                Map<Integer, Long> solution = search.search(60, 600, 60);
+                assertNotNull(solution);
+                assertEquals(Collections.singletonMap(0, (long) smallest), solution);
+                assertEquals(smallest, search.getWindow());
+                assertEquals(smallest, ((StubScheduler) search.getScheduler()).window);
+                // Whole batches are tried up to the one with the window
+                int index = smallest / 60 - 1;
+                int batches = index / parallelism + 1;
+                assertEquals(Math.min(10, batches * parallelism), tried.size());
+                assertEquals(1.0, search.getProgress().get(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void returnsNullWhenNoWindowSucceeds() {
+        for (int parallelism : new int[] {1, 3, 4}) {
+            List<Integer> tried = Collections.synchronizedList(new ArrayList<>());
+            FlexWindowSearch search = new FlexWindowSearch(operation, 240.0, 0.8);
+            search.setParallelism(parallelism);
+            search.setEngine((op, bestValue, baseValueRatio) -> new StubScheduler(660, tried));
+
+            assertNull(search.search(60, 600, 60));
+            assertEquals(0, search.getWindow());
+            assertNull(search.getScheduler());
+            assertEquals(10, tried.size());
+            assertEquals(1.0, search.getProgress().get(), 0.0);
+        }
+    }
+
+    @Test
+    public void warmStartSeedsPreviousBestClampedToWindow() {
+        GeneticScheduler previous = new GeneticScheduler(operation, 240.0, 0.8);
+        Map<Integer, Long> previousBest = previous.schedule(new ScheduleProblem(operation, 600), null);
+        assertNotNull(previousBest);
+        // Some shifts do not fit the smaller window
+        assertTrue(previousBest.values().stream().anyMatch(shift -> Math.abs(shift) > 120));
+
+        SeedRecorder warm = new SeedRecorder(operation);
+        warm.setWarmStart(true);
+        warm.warmStartFrom(previous);
+        ScheduleProblem problem = new ScheduleProblem(operation, 120);
+        warm.schedule(problem, Duration.ZERO);
+
+        int[] expected = new int[problem.targetCount()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (int) Math.max(-120, Math.min(120, previousBest.get(problem.target(i))));
+        }
+        assertArrayEquals(expected, warm.seed);
+    }
+
+
+    /**
+     * Succeeds with windows of at least the given size, returning the window as the only shift.
+     */
+    private static class StubScheduler implements Scheduler {
+
+        private final int smallest;
+
+        private final List<Integer> tried;
+
+        private final DoubleProperty progress = new SimpleDoubleProperty(0.0);
+
+        private int window;
+
+        StubScheduler(int smallest, List<Integer> tried) {
+            this.smallest = smallest;
+            this.tried = tried;
+        }
+
+        @Override
+        public Map<Integer, Long> schedule() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Integer, Long> schedule(Duration budget) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Integer, Long> schedule(ScheduleProblem problem, Duration budget) {
+            window = problem.getWindow();
+            tried.add(window);
+            progress.set(1.0);
+            return problem.getWindow() >= smallest
+                    ? Collections.singletonMap(0, (long) problem.getWindow())
+                    : null;
+        }
+
+        @Override
+        public double fitness(Map<Integer, Long> candidate) {
+            return 0;
+        }
+
+        @Override
+        public long smallestInterval(Map<Integer, Long> candidate) {
+            return 0;
+        }
+
+        @Override
+        public double value(long interval, int waves) {
+            return 0;
+        }
+
+        @Override
+        public DoubleProperty getProgress() {
+            return progress;
+        }
+
+        @Override
+        public void setTargetFitness(double targetFitness) {
+        }
+    }
+
+
+    /**
+     * Notes down the first chromosome of the first population evaluated.
+     */
+    private static class SeedRecorder extends GeneticScheduler {
+
+        private int[] seed;
+
+        SeedRecorder(Operation operation) {
+            super(operation, 240.0, 0.8);
+        }
+
+        @Override
+        public double fitness(int[] chromosomes, int offset) {
+            int genes = problem.targetCount();
+            synchronized (this) {
+                if (seed == null && offset == 0 && chromosomes.length > genes) {
+                    seed = Arrays.copyOf(chromosomes, genes);
+                }
+            }
+            return super.fitness(chromosomes, offset);
+        }
+    }
+}
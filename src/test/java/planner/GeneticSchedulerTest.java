@@ -0,0 +1,164 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.util.AnnealingScheduler;
+import planner.util.Converters;
+import planner.util.GeneticScheduler;
+import planner.util.ScheduleProblem;
+import planner.util.ScheduleState;
+import planner.util.Scheduler;
+import planner.util.TabuScheduler;
+
+public class GeneticSchedulerTest {
+
+    private Operation operation;
+
+    private GeneticScheduler scheduler;
+
+    private Map<Integer, Long> candidate = new HashMap<>();
+
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticWorld.create(3000, 10, 1L);
+        operation = new Operation();
+        SyntheticWorld.planAttacks(operation, 15, 40, 1L);
+        operation.setRandomShiftWindow(600);
+        operation.getAttacks().values().get(0).setLandingTimeShift(7);
+        scheduler = new GeneticScheduler(operation, 240.0, 0.8);
+        Random random = new Random(1L);
+        for (Attack attack : operation.getAttacks().values()) {
+            candidate.put(attack.getTarget().getCoordId(), (long) random.nextInt(1200) - 600);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Test
+    public void fitnessMatchesAttackSendingTimes() {
+        long defaultLandingTime = Converters.toEpochSecond(operation.getDefaultLandingTime());
+        Map<Integer, List<Attack>> attacksPerPlayer = new HashMap<>();
+        for (AttackerVillage attacker : operation.getAttackers()) {
+            for (Attack attack : attacker.getPlannedAttacks()) {
+                attack.setLandingEpochSecond(defaultLandingTime + candidate.get(attack.getTarget().getCoordId()));
+                attacksPerPlayer.computeIfAbsent(attacker.getPlayerId(), k -> new ArrayList<>()).add(attack);
+            }
+        }
+        double expected = 0;
+        long smallest = Integer.MAX_VALUE;
+        boolean zero = false;
+        for (List<Attack> attacks : attacksPerPlayer.values()) {
+            attacks.sort(Comparator.comparingLong(Attack::getSendingEpochSecond));
+            for (int i = 0; i < attacks.size() - 1; i++) {
+                long interval = attacks.get(i + 1).getSendingEpochSecond() - attacks.get(i).getSendingEpochSecond();
+                double value = scheduler.value(interval, attacks.get(i + 1).getWaves());
+                if (value < 0.001) zero = true;
+                expected += value;
+                smallest = Math.min(smallest, interval);
+            }
+        }
+        assertEquals(zero ? 0.0 : expected, scheduler.fitness(candidate), 1e-9);
+        assertEquals(smallest, scheduler.smallestInterval(candidate));
+    }
+
+    @Test
+    public void stopsWhenBudgetIsUsed() {
+        Map<Integer, Long> solution = scheduler.schedule(Duration.ZERO);
+        assertEquals(1, scheduler.getGenerationsRun());
+        if (solution != null) assertEquals(candidate.keySet(), solution.keySet());
+        assertEquals(1.0, scheduler.getProgress().get(), 0.0);
+    }
+
+    @Test
+    public void islandsStopWhenBudgetIsUsed() {
+        scheduler.setIslands(4);
+        Map<Integer, Long> solution = scheduler.schedule(Duration.ZERO);
+        assertEquals(1, scheduler.getGenerationsRun());
+        if (solution != null) assertEquals(candidate.keySet(), solution.keySet());
+        assertEquals(1.0, scheduler.getProgress().get(), 0.0);
+    }
+
+    @Test
+    public void enginesShareTheFitness() {
+        AnnealingScheduler annealing = new AnnealingScheduler(operation, 240.0, 0.8);
+        annealing.setMovesPerTarget(500);
+        TabuScheduler tabu = new TabuScheduler(operation, 240.0, 0.8);
+        tabu.setIterationsPerTarget(50);
+        for (Scheduler engine : new Scheduler[] {annealing, tabu}) {
+            assertEquals(scheduler.fitness(candidate), engine.fitness(candidate), 1e-9);
+            Map<Integer, Long> solution = engine.schedule();
+            assertNotNull(solution);
+            assertEquals(candidate.keySet(), solution.keySet());
+            assertEquals(scheduler.fitness(solution), engine.fitness(solution), 1e-9);
+            assertTrue(engine.fitness(solution) > 0);
+        }
+    }
+
+    @Test
+    public void valueTableMatchesCurve() {
+        // Sets up the scheduler's snapshot and its table
+        scheduler.fitness(candidate);
+        scheduler.setCutoff(40);
+        scheduler.setSecondsPerWave(8);
+        assertEquals(0.0, scheduler.value(39, 1), 0.0);
+        assertEquals(240.0, scheduler.value(60 + 8 * 3, 3), 0.0);
+        for (int waves = 0; waves <= 10; waves++) {
+            for (long interval = -10; interval < 3000; interval++) {
+                assertEquals(scheduler.curve(interval, waves), scheduler.value(interval, waves), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void stateFollowsGeneChanges() {
+        // Sets up the scheduler's snapshot of the same attacks
+        scheduler.fitness(candidate);
+        ScheduleProblem problem = new ScheduleProblem(operation);
+        int[] chromosome = new int[problem.targetCount()];
+        for (int i = 0; i < chromosome.length; i++) {
+            chromosome[i] = candidate.get(problem.target(i)).intValue();
+        }
+        ScheduleState state = new ScheduleState(problem, scheduler);
+        state.load(chromosome, 0);
+        Random random = new Random(2L);
+        for (int move = 0; move < 2000; move++) {
+            int target = random.nextInt(chromosome.length);
+            // Mostly small steps, so that some candidates have no zero-valued intervals
+            chromosome[target] = Math.max(-600, Math.min(600, chromosome[target] + random.nextInt(121) - 60));
+            state.set(target, chromosome[target]);
+            assertEquals(scheduler.fitness(chromosome, 0), state.fitness(), 1e-6);
+            assertEquals(scheduler.smallestInterval(toMap(problem, chromosome)), state.smallestInterval());
+        }
+    }
+
+
+    private static Map<Integer, Long> toMap(ScheduleProblem problem, int[] chromosome) {
+        Map<Integer, Long> map = new HashMap<>();
+        for (int i = 0; i < chromosome.length; i++) {
+            map.put(problem.target(i), (long) chromosome[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,112 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.util.MapSqlDownloader;
+
+public class MapSqlDownloaderTest {
+
+    private static final int VILLAGES = 5000;
+
+    private HttpServer server;
+
+    private byte[] mapSql;
+
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticWorld.create(0, 0, 1L);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= VILLAGES; i++) {
+            sb.append("INSERT INTO `x_world` VALUES (").append(i).append(",0,0,1,").append(i)
+                    .append(",'Village ").append(i).append("',1,'Player',0,'',100,NULL,FALSE,NULL,NULL,NULL);\n");
+        }
+        mapSql = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = gzip(mapSql);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plain/map.sql", exchange -> {
+            // Chunked transfer, like a server streaming the file
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(mapSql);
+            }
+        });
+        server.createContext("/gzip/map.sql", exchange -> {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, gzipped.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(gzipped);
+            }
+        });
+        server.createContext("/unlabeled/map.sql", exchange -> {
+            exchange.sendResponseHeaders(200, gzipped.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(gzipped);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        Database.close();
+    }
+
+    @Test
+    public void importsPlainResponse() throws Exception {
+        assertEquals(VILLAGES, MapSqlDownloader.download(uri("plain")).getRows());
+        assertEquals(VILLAGES, worldSize());
+    }
+
+    @Test
+    public void importsGzipResponse() throws Exception {
+        assertEquals(VILLAGES, MapSqlDownloader.download(uri("gzip")).getRows());
+        assertEquals(VILLAGES, worldSize());
+    }
+
+    @Test
+    public void detectsGzipWithoutHeader() throws Exception {
+        assertEquals(VILLAGES, MapSqlDownloader.download(uri("unlabeled")).getRows());
+        assertEquals(VILLAGES, worldSize());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnMissingFile() throws Exception {
+        MapSqlDownloader.download(uri("missing"));
+    }
+
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/" + path + "/map.sql");
+    }
+
+    private int worldSize() throws Exception {
+        ResultSet rs = Database.query("SELECT count(*) FROM x_world");
+        return rs.getInt(1);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
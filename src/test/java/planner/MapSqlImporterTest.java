@@ -0,0 +1,63 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.sql.ResultSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.util.MapSqlImporter;
+import planner.util.WorldDiff;
+
+public class MapSqlImporterTest {
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticWorld.create(0, 0, 1L);
+        importLines(row(1, "A", 100), row(2, "B", 200), row(3, "C", 300));
+    }
+
+    @After
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Test
+    public void writesOnlyDifferences() throws Exception {
+        WorldDiff diff = importLines(row(1, "A", 100), row(2, "B", 250), row(4, "D", 400));
+        assertEquals(3, diff.getRows());
+        assertEquals(1, diff.getInserted().size());
+        assertEquals("D", diff.getInserted().get(4).getVillageName());
+        assertEquals(1, diff.getChanged().size());
+        assertEquals(250, diff.getChanged().get(2).getPopulation());
+        assertEquals(1, diff.getRemoved().size());
+        assertTrue(diff.getRemoved().contains(3));
+        ResultSet rs = Database.query("SELECT count(*), sum(population) FROM x_world");
+        assertEquals(3, rs.getInt(1));
+        assertEquals(750, rs.getInt(2));
+    }
+
+    @Test
+    public void keepsWorldOnEmptyFile() throws Exception {
+        WorldDiff diff = importLines("");
+        assertTrue(diff.isEmpty());
+        ResultSet rs = Database.query("SELECT count(*) FROM x_world");
+        assertEquals(3, rs.getInt(1));
+    }
+
+
+    private static WorldDiff importLines(String... lines) throws Exception {
+        return MapSqlImporter.importMapSql(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    private static String row(int coordId, String name, int population) {
+        return "INSERT INTO `x_world` VALUES (" + coordId + ",0,0,1," + coordId + ",'" + name + "',1,'Player',0,'',"
+                + population + ",NULL,FALSE,NULL,NULL,NULL);";
+    }
+}
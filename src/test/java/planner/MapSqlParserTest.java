@@ -0,0 +1,42 @@
+package planner;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import planner.util.MapSqlParser;
+
+public class MapSqlParserTest {
+
+    @Test
+    public void parsesMapSqlLine() {
+        List<Object[]> tuples = MapSqlParser.parse("INSERT INTO `x_world` VALUES " +
+                "(1,-200,200,1,55,'Kylä, \\'1\\'',7,'Pelaaja',0,'',150,NULL,FALSE,NULL,NULL,NULL);");
+        assertEquals(1, tuples.size());
+        assertArrayEquals(new Object[]{1L, -200L, 200L, 1L, 55L, "Kylä, '1'", 7L, "Pelaaja", 0L, "", 150L,
+                null, 0L, null, null, null}, tuples.get(0));
+    }
+
+    @Test
+    public void parsesSeveralTuplesAndDoubledQuotes() {
+        List<Object[]> tuples = MapSqlParser.parse("insert into x_world values (1,'it''s'),(2,'a)b');");
+        assertEquals(2, tuples.size());
+        assertArrayEquals(new Object[]{1L, "it's"}, tuples.get(0));
+        assertArrayEquals(new Object[]{2L, "a)b"}, tuples.get(1));
+    }
+
+    @Test
+    public void ignoresOtherLines() {
+        assertTrue(MapSqlParser.parse("").isEmpty());
+        assertTrue(MapSqlParser.parse("-- VALUES (1)").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedTuple() {
+        MapSqlParser.parse("INSERT INTO `x_world` VALUES (1,'x'");
+    }
+}
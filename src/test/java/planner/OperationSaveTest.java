@@ -0,0 +1,140 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+
+public class OperationSaveTest {
+
+    private Operation operation;
+
+    private AttackerVillage attacker;
+
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticWorld.create(2000, 5, 1L);
+        operation = new Operation();
+        attacker = operation.getAttackers().get(0);
+        for (int i = 0; i < 10; i++) {
+            plan(operation.getTargets().get(i), 2);
+        }
+        operation.getTargets().get(0).setRandomShiftSeconds(30);
+        assertTrue(operation.save());
+    }
+
+    @After
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Test
+    public void savesOnlyNonZeroShifts() throws Exception {
+        assertEquals(1, count("target_info"));
+        assertEquals(10, count("attacks"));
+    }
+
+    @Test
+    public void incrementalSaveKeepsPlanInSync() throws Exception {
+        // Change one attack, remove one, add one, reset the shift
+        attacker.getPlannedAttacks().get(0).setWaves(4);
+        Attack removed = attacker.getPlannedAttacks().get(1);
+        removed.setWaves(0);
+        operation.update();
+        plan(operation.getTargets().get(10), 1);
+        operation.getTargets().get(0).setRandomShiftSeconds(0);
+        attacker.getTs().set(15);
+        assertTrue(operation.save());
+
+        assertEquals(0, count("target_info"));
+        assertEquals(10, count("attacks"));
+        Operation loaded = Operation.load();
+        int waves = 0;
+        for (Attack attack : loaded.getAttacker(attacker.getCoordId()).getPlannedAttacks()) {
+            waves += attack.getWaves();
+        }
+        assertEquals(2 * 8 + 4 + 1, waves);
+        assertNull(loaded.getAttacks().get(attacker.getCoordId(), removed.getTarget().getCoordId()));
+        assertEquals(15, loaded.getAttacker(attacker.getCoordId()).getTs().get());
+    }
+
+    @Test
+    public void lazyLoadBringsPlannedTargetsAndSelectedAlliances() throws Exception {
+        Operation lazy = Operation.load(true);
+        TargetVillage shifted = operation.getTargets().get(0);
+        assertEquals(10, lazy.getAttacker(attacker.getCoordId()).getPlannedAttacks().size());
+        assertEquals(30, lazy.getTarget(shifted.getCoordId()).getRandomShiftSeconds());
+        assertTrue(lazy.getTargets().size() < operation.getTargets().size());
+
+        String alliance = "Ally7";
+        long allianceVillages = operation.getTargets().stream()
+                .filter(t -> t.getAllyName().equals(alliance)).count();
+        lazy.loadAlliances(Collections.singleton(alliance));
+        assertEquals(allianceVillages, lazy.getTargets().stream()
+                .filter(t -> t.getAllyName().equals(alliance)).count());
+        assertTrue(lazy.loadAlliances(Collections.singleton(alliance)).isEmpty());
+    }
+
+    @Test
+    public void randomiseCoversTargetsLoadedLater() throws Exception {
+        String alliance = "Ally7";
+        TargetVillage saved = operation.getTargets().stream()
+                .filter(t -> t.getAllyName().equals(alliance)).reduce((a, b) -> b).get();
+        saved.setRandomShiftSeconds(500);
+        assertTrue(operation.save());
+
+        Operation lazy = Operation.load(true);
+        assertNull(lazy.getTarget(saved.getCoordId()));
+        lazy.setRandomShiftWindow(60);
+        lazy.computeLandingTimes(true);
+        List<TargetVillage> loaded = lazy.loadAlliances(Collections.singleton(alliance));
+        assertFalse(loaded.isEmpty());
+        assertTrue(loaded.stream().anyMatch(t -> t.getRandomShiftSeconds() != 0));
+        for (TargetVillage target : loaded) {
+            assertTrue(Math.abs(target.getRandomShiftSeconds()) <= 60);
+            assertEquals(lazy.getDefaultLandingTime().plusSeconds(target.getRandomShiftSeconds()),
+                    lazy.getLandTimes().get(target.getCoordId()));
+        }
+
+        // The old shift is not saved again for a target that was not loaded
+        Operation randomised = Operation.load(true);
+        randomised.setRandomShiftWindow(60);
+        randomised.computeLandingTimes(true);
+        assertTrue(randomised.save());
+        Operation reloaded = Operation.load(true);
+        assertNull(reloaded.getTarget(saved.getCoordId()));
+        reloaded.loadAlliances(Collections.singleton(alliance));
+        assertTrue(Math.abs(reloaded.getTarget(saved.getCoordId()).getRandomShiftSeconds()) <= 60);
+        // Loaded targets keep their new shifts
+        int planned = operation.getTargets().get(0).getCoordId();
+        assertEquals(randomised.getTarget(planned).getRandomShiftSeconds(),
+                reloaded.getTarget(planned).getRandomShiftSeconds());
+    }
+
+
+    private void plan(TargetVillage target, int waves) {
+        Attack attack = operation.getAttacks().getOrCreate(attacker, target);
+        attack.setWaves(waves);
+        attacker.getPlannedAttacks().add(attack);
+    }
+
+    private int count(String table) throws Exception {
+        ResultSet rs = Database.query("SELECT count(*) FROM " + table);
+        return rs.getInt(1);
+    }
+}
@@ -0,0 +1,107 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import planner.bench.SyntheticWorld;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+import planner.util.Converters;
+import planner.util.SendWindow;
+
+public class SendWindowTest {
+
+    private static final DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+
+    @After
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Test
+    public void parsesWindowOverMidnight() {
+        SendWindow window = SendWindow.parse("13:00:00", "00:00:00");
+        assertEquals(13 * 3600, window.getStart());
+        assertEquals(0, window.getEnd());
+        assertTrue(window.contains(time("2020-04-11 13:00:00")));
+        assertTrue(window.contains(time("2020-04-11 23:59:59")));
+        assertTrue(window.contains(time("2020-04-12 00:00:00")));
+        assertFalse(window.contains(time("2020-04-12 00:00:01")));
+        assertFalse(window.contains(time("2020-04-12 12:59:59")));
+
+        List<long[]> openings = window.occurrences(time("2020-04-11 00:00:00"), time("2020-04-11 18:00:00"));
+        assertEquals(2, openings.size());
+        assertEquals(time("2020-04-11 00:00:00"), openings.get(0)[0]);
+        assertEquals(time("2020-04-11 00:00:00"), openings.get(0)[1]);
+        assertEquals(time("2020-04-11 13:00:00"), openings.get(1)[0]);
+        assertEquals(time("2020-04-11 18:00:00"), openings.get(1)[1]);
+    }
+
+    @Test
+    public void parsesLooseFormats() {
+        assertEquals(7 * 3600 + 30 * 60, SendWindow.parse("7.30", "22").getStart());
+        assertEquals(22 * 3600, SendWindow.parse("7.30", "22").getEnd());
+        assertTrue(SendWindow.parse(null, "").isAlways());
+        assertTrue(SendWindow.parse("00:00:00", "00:00:00").isAlways());
+        assertTrue(SendWindow.parse("no night sends", null).isAlways());
+    }
+
+    @Test
+    public void queriesMatchBruteForce() throws Exception {
+        SyntheticWorld.create(3000, 5, 1L);
+        Operation operation = new Operation();
+        operation.setRandomShiftWindow(3 * 3600);
+        operation.computeLandingTimes(true);
+        AttackerVillage attacker = operation.getAttackers().get(0);
+        attacker.setSendMin("03:00:00");
+        attacker.setSendMax("05:30:00");
+
+        List<TargetVillage> expected = new ArrayList<>();
+        for (TargetVillage target : operation.getTargets()) {
+            long send = operation.previewAttack(attacker, target).getSendingEpochSecond();
+            if (attacker.getSendWindow().contains(send)) expected.add(target);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(new HashSet<>(expected), new HashSet<>(operation.reachableTargets(attacker)));
+
+        for (TargetVillage target : expected.subList(0, Math.min(20, expected.size()))) {
+            long landingTime = operation.previewAttack(attacker, target).getLandingEpochSecond();
+            assertTrue(operation.attackersInWindow(target, landingTime).contains(attacker));
+            assertFalse(operation.attackersInWindow(target, landingTime + 12 * 3600).contains(attacker));
+            assertTrue(operation.suggestAttackers(target, landingTime, operation.getAttackers().size()).contains(attacker));
+        }
+
+        // Every participant with a window, against the travel times of all targets
+        String[][] windows = {{"22:00:00", "02:00:00"}, {"08:00:00", "09:00:00"}, {"12:00", "23:00"}, {"06", "07"}};
+        for (int i = 0; i < windows.length; i++) {
+            operation.getAttackers().get(i + 1).setSendMin(windows[i][0]);
+            operation.getAttackers().get(i + 1).setSendMax(windows[i][1]);
+        }
+        for (TargetVillage target : operation.getTargets()) {
+            List<AttackerVillage> inWindow = new ArrayList<>();
+            for (AttackerVillage participant : operation.getAttackers()) {
+                long send = operation.previewAttack(participant, target).getSendingEpochSecond();
+                if (participant.getSendWindow().contains(send)) inWindow.add(participant);
+            }
+            long landingTime = Converters.toEpochSecond(operation.getLandTimes().get(target.getCoordId()));
+            assertEquals(inWindow, operation.attackersInWindow(target, landingTime));
+        }
+    }
+
+
+    private static long time(String time) {
+        return Converters.toEpochSecond(LocalDateTime.parse(time, f));
+    }
+}
@@ -0,0 +1,75 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import planner.entities.SpatialIndex;
+import planner.entities.TargetVillage;
+
+public class SpatialIndexTest {
+
+    private static final int serverSize = 50;
+
+    private final List<TargetVillage> villages = new ArrayList<>();
+
+    private final SpatialIndex<TargetVillage> index = new SpatialIndex<>(serverSize, 7);
+
+
+    @Before
+    public void setUp() {
+        Random random = new Random(1L);
+        for (int i = 0; i < 1500; i++) {
+            TargetVillage village = mock(TargetVillage.class);
+            when(village.getXCoord()).thenReturn(random.nextInt(2 * serverSize + 1) - serverSize);
+            when(village.getYCoord()).thenReturn(random.nextInt(2 * serverSize + 1) - serverSize);
+            when(village.getPopulation()).thenReturn(random.nextInt(1000));
+            villages.add(village);
+            index.add(village);
+        }
+    }
+
+    @Test
+    public void withinMatchesLinearScan() {
+        // Centers at the edges and corners to cover the wraparound
+        int[][] centers = {{0, 0}, {-50, -50}, {50, 49}, {-48, 3}, {12, 50}};
+        for (int[] center : centers) {
+            for (double radius : new double[] {0, 3.5, 10, 25, 49.9, 80}) {
+                HashSet<TargetVillage> expected = new HashSet<>();
+                for (TargetVillage village : villages) {
+                    if (index.distance(center[0], center[1], village) <= radius) expected.add(village);
+                }
+                assertEquals(expected, new HashSet<>(index.within(center[0], center[1], radius)));
+            }
+        }
+    }
+
+    @Test
+    public void nearestMatchesLinearScan() {
+        int[][] centers = {{0, 0}, {-50, -50}, {50, 49}};
+        for (int[] center : centers) {
+            List<TargetVillage> expected = new ArrayList<>();
+            for (TargetVillage village : villages) {
+                if (village.getPopulation() > 900) expected.add(village);
+            }
+            expected.sort(Comparator.comparingDouble(village -> index.distance(center[0], center[1], village)));
+            List<TargetVillage> nearest = index.nearest(center[0], center[1], 20, village -> village.getPopulation() > 900);
+            assertEquals(20, nearest.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(index.distance(center[0], center[1], expected.get(i)),
+                        index.distance(center[0], center[1], nearest.get(i)), 0.0);
+            }
+        }
+        index.remove(villages.get(0));
+        assertEquals(villages.size() - 1, index.size());
+    }
+}
@@ -0,0 +1,76 @@
+package planner;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import org.junit.Test;
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.TargetVillage;
+import planner.util.TravelTimeKernel;
+
+public class TravelTimeKernelTest {
+
+    private static final int serverSize = 200;
+    private static final int serverSpeed = 1;
+    private static final int[] unitSpeeds = {3, 5, 19};
+
+
+    @Test
+    public void knownValues() {
+        int[] tx = {0, 4, 44};
+        int[] ty = {1, -1, 66};
+        long[][] out = new long[1][3];
+        TravelTimeKernel.travelSeconds(-122, 4, tx, ty, 3, serverSize, serverSpeed, 2.0,
+                new int[] {19}, TravelTimeKernel.tsFactor(0, 0), out);
+        assertEquals(16787L, out[0][2]);
+        TravelTimeKernel.travelSeconds(-122, 4, tx, ty, 3, serverSize, serverSpeed, 2.0,
+                new int[] {19}, TravelTimeKernel.tsFactor(10, 0), out);
+        assertEquals(6859L, out[0][2]);
+    }
+
+
+    @Test
+    public void batchMatchesAttack() {
+        Random random = new Random(1L);
+        int count = 300;
+        int ax = -150;
+        int ay = 120;
+        int[] tx = new int[count];
+        int[] ty = new int[count];
+        for (int i = 0; i < count; i++) {
+            // Mix of short trips around the 20 square threshold and trips across the map edge
+            boolean near = i % 3 == 0;
+            tx[i] = near ? ax + random.nextInt(41) - 20 : random.nextInt(2 * serverSize + 1) - serverSize;
+            ty[i] = near ? ay + random.nextInt(41) - 20 : random.nextInt(2 * serverSize + 1) - serverSize;
+        }
+        AttackerVillage attacker = mock(AttackerVillage.class);
+        when(attacker.getXCoord()).thenReturn(ax);
+        when(attacker.getYCoord()).thenReturn(ay);
+        when(attacker.getArteSpeed()).thenReturn(1.5);
+        when(attacker.getHeroBoots()).thenReturn(25);
+
+        for (int ts = 0; ts <= 20; ts += 5) {
+            long[][] out = new long[unitSpeeds.length][count];
+            TravelTimeKernel.travelSeconds(ax, ay, tx, ty, count, serverSize, serverSpeed, 1.5,
+                    unitSpeeds, TravelTimeKernel.tsFactor(ts, 25), out);
+            for (int i = 0; i < count; i++) {
+                TargetVillage target = mock(TargetVillage.class);
+                when(target.getXCoord()).thenReturn(tx[i]);
+                when(target.getYCoord()).thenReturn(ty[i]);
+                for (int s = 0; s < unitSpeeds.length; s++) {
+                    Attack attack = new Attack(target, attacker, 0, false, false, unitSpeeds[s], ts,
+                            LocalDateTime.now(), 0, serverSpeed, serverSize, false, true,
+                            new SimpleBooleanProperty(false));
+                    assertEquals(attack.travelSeconds(), out[s][i]);
+                }
+            }
+        }
+    }
+}
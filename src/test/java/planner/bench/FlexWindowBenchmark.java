@@ -0,0 +1,70 @@
+package planner.bench;
+
+import java.util.Map;
+
+import planner.entities.Operation;
+import planner.util.FlexWindowSearch;
+import planner.util.GeneticScheduler;
+import planner.util.ScheduleProblem;
+import planner.util.Scheduler;
+
+/**
+ * Measures finding the smallest workable flex window on a synthetic plan: a fresh scheduler run per window
+ * as the optimise loop used to do, the warm-started search one window at a time,
+ * and the warm-started search trying windows on all cores.
+ * Usage: FlexWindowBenchmark [participants] [targets] [attacks] [smallest window seconds] [step seconds]
+ */
+public class FlexWindowBenchmark {
+
+    private static final int LARGEST_WINDOW = 600;
+
+
+    public static void main(String[] args) throws Exception {
+
+        int participants = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        int targets = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int attacks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int from = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        int step = args.length > 4 ? Integer.parseInt(args[4]) : 60;
+        SyntheticWorld.create(10000, participants, 1L);
+        Operation operation = new Operation();
+        SyntheticWorld.planAttacks(operation, targets, attacks, 1L);
+        System.out.println(participants + " participants, " + targets + " targets, " + attacks + " attacks");
+
+        long start = System.nanoTime();
+        GeneticScheduler scheduler = new GeneticScheduler(operation, 240.0, 0.8);
+        Map<Integer, Long> solution = null;
+        int window = from;
+        for (; window <= LARGEST_WINDOW && solution == null; window += step) {
+            solution = scheduler.schedule(new ScheduleProblem(operation, window), null);
+        }
+        long coldMillis = (System.nanoTime() - start) / 1_000_000;
+        String cold = "Fresh run per window: " + coldMillis + " ms, " + result(scheduler, solution, window - step);
+
+        FlexWindowSearch search = new FlexWindowSearch(operation, 240.0, 0.8);
+        search.setParallelism(1);
+        start = System.nanoTime();
+        solution = search.search(from, LARGEST_WINDOW, step);
+        long warmMillis = (System.nanoTime() - start) / 1_000_000;
+        String warm = "Warm start, one window at a time: " + warmMillis + " ms, "
+                + result(search.getScheduler(), solution, search.getWindow());
+
+        search.setParallelism(Runtime.getRuntime().availableProcessors());
+        start = System.nanoTime();
+        solution = search.search(from, LARGEST_WINDOW, step);
+        long parallelMillis = (System.nanoTime() - start) / 1_000_000;
+        String parallel = "Warm start, " + search.getParallelism() + " windows at a time: " + parallelMillis + " ms, "
+                + result(search.getScheduler(), solution, search.getWindow());
+
+        System.out.println(cold);
+        System.out.println(warm);
+        System.out.println(parallel);
+    }
+
+
+    private static String result(Scheduler scheduler, Map<Integer, Long> solution, int window) {
+        return solution == null
+                ? "no solution"
+                : "window " + window + " s, fitness " + Math.round(scheduler.fitness(solution));
+    }
+}
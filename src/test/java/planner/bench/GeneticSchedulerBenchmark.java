@@ -0,0 +1,179 @@
+package planner.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import planner.entities.Operation;
+import planner.util.GeneticScheduler;
+import planner.util.ScheduleProblem;
+import planner.util.ScheduleState;
+
+/**
+ * Measures one run of the GeneticScheduler on a synthetic plan: wall time, heap allocated
+ * by all live threads and garbage collection.
+ * Usage: GeneticSchedulerBenchmark [participants] [targets] [attacks] [flex window seconds] [ROULETTE|TOURNAMENT]
+ * [islands] [migration interval]
+ */
+public class GeneticSchedulerBenchmark {
+
+    private static final int EVALUATIONS = 100000;
+
+    public static void main(String[] args) throws Exception {
+
+        int participants = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        int targets = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int attacks = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 600;
+        GeneticScheduler.Selection selection = args.length > 4
+                ? GeneticScheduler.Selection.valueOf(args[4])
+                : GeneticScheduler.Selection.ROULETTE;
+        int islands = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int migrationInterval = args.length > 6 ? Integer.parseInt(args[6]) : 5;
+        SyntheticWorld.create(10000, participants, 1L);
+        Operation operation = new Operation();
+        SyntheticWorld.planAttacks(operation, targets, attacks, 1L);
+        operation.setRandomShiftWindow(window);
+        System.out.println(participants + " participants, " + targets + " targets, "
+                + attacks + " attacks, flex window " + window + " s, " + selection + " selection, "
+                + islands + " island(s) migrating every " + migrationInterval + " generations");
+
+        GeneticScheduler scheduler = new GeneticScheduler(operation, 240.0, 0.8);
+        scheduler.setSelection(selection);
+        scheduler.setIslands(islands);
+        scheduler.setMigrationInterval(migrationInterval);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = allocatedBytes(threads);
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        Map<Integer, Long> solution = scheduler.schedule();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Schedule: " + millis + " ms, " + scheduler.getGenerationsRun() + " generations, "
+                + (allocatedBytes(threads) - allocated) / 1024 / 1024 + " MB allocated, "
+                + (gcCount() - gcCount) + " collections taking " + (gcMillis() - gcMillis) + " ms");
+        System.out.println(solution == null
+                ? "No solution"
+                : "Fitness " + scheduler.fitness(solution) + ", smallest interval " + scheduler.smallestInterval(solution));
+
+        // Evaluation alone, on one thread
+        ScheduleProblem problem = new ScheduleProblem(operation);
+        int genes = problem.targetCount();
+        int[] chromosomes = new int[EVALUATIONS * genes];
+        Random random = new Random(1L);
+        for (int i = 0; i < chromosomes.length; i++) {
+            chromosomes[i] = random.nextInt(2 * window) - window;
+        }
+        double sum = 0;
+        for (int i = 0; i < EVALUATIONS; i++) {
+            sum += scheduler.fitness(chromosomes, i * genes);
+        }
+        allocated = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < EVALUATIONS; i++) {
+                sum += scheduler.fitness(chromosomes, i * genes);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println("Fitness evaluation: " + nanos / (5L * EVALUATIONS) + " ns, "
+                + (threads.getCurrentThreadAllocatedBytes() - allocated) / (5L * EVALUATIONS) + " bytes allocated per chromosome"
+                + " (checksum " + Math.round(sum) + ")");
+
+        // One gene changed at a time around the solution, as in local search:
+        // whole chromosome against the players affected by the gene
+        int[] chromosome = Arrays.copyOf(chromosomes, genes);
+        if (solution != null) {
+            for (int i = 0; i < genes; i++) {
+                chromosome[i] = solution.get(problem.target(i)).intValue();
+            }
+        }
+        ScheduleState state = new ScheduleState(problem, scheduler);
+        state.load(chromosome, 0);
+        int[] moves = new int[2 * EVALUATIONS];
+        for (int i = 0; i < EVALUATIONS; i++) {
+            moves[2 * i] = random.nextInt(genes);
+            moves[2 * i + 1] = chromosome[moves[2 * i]] + random.nextInt(window / 10 + 1) - window / 20;
+        }
+        double fullSum = 0;
+        double deltaSum = 0;
+        long fullNanos = 0;
+        long deltaNanos = 0;
+        for (int round = 0; round < 6; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < EVALUATIONS; i++) {
+                chromosome[moves[2 * i]] = moves[2 * i + 1];
+                fullSum += scheduler.fitness(chromosome, 0);
+            }
+            if (round > 0) fullNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < EVALUATIONS; i++) {
+                state.set(moves[2 * i], moves[2 * i + 1]);
+                deltaSum += state.fitness();
+            }
+            if (round > 0) deltaNanos += System.nanoTime() - start;
+        }
+        System.out.println("Single gene change, full evaluation: " + fullNanos / (5L * EVALUATIONS) + " ns");
+        System.out.println("Single gene change, delta evaluation: " + deltaNanos / (5L * EVALUATIONS)
+                + " ns, same results: " + (Math.abs(fullSum - deltaSum) < 1e-6 * Math.max(1, Math.abs(fullSum))));
+
+        // Interval values from the table against the curve
+        long[] intervals = new long[EVALUATIONS];
+        int[] waves = new int[EVALUATIONS];
+        for (int i = 0; i < EVALUATIONS; i++) {
+            intervals[i] = random.nextInt(2 * window);
+            waves[i] = 1 + random.nextInt(8);
+        }
+        double tableSum = 0;
+        double curveSum = 0;
+        long tableNanos = 0;
+        long curveNanos = 0;
+        for (int round = 0; round < 6; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < EVALUATIONS; i++) {
+                tableSum += scheduler.value(intervals[i], waves[i]);
+            }
+            if (round > 0) tableNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < EVALUATIONS; i++) {
+                curveSum += scheduler.curve(intervals[i], waves[i]);
+            }
+            if (round > 0) curveNanos += System.nanoTime() - start;
+        }
+        System.out.println("Interval value, table: " + tableNanos / (5L * EVALUATIONS) + " ns, curve: "
+                + curveNanos / (5L * EVALUATIONS) + " ns, same results: " + (tableSum == curveSum));
+    }
+
+
+    /**
+     * @return bytes allocated so far by the threads that are alive, including the fork/join pool
+     */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long bytes = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) bytes += allocated;
+        }
+        return bytes;
+    }
+
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,104 @@
+package planner.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.ResultSet;
+import java.util.Random;
+
+import planner.Database;
+import planner.util.MapSqlImporter;
+import planner.util.WorldDiff;
+
+/**
+ * Measures map.sql import throughput on a generated map.sql.
+ * Compares executing every line as its own statement with the batched MapSqlImporter,
+ * and measures a differential refresh with the next day's map.sql.
+ * Usage: MapSqlImportBenchmark [villages]
+ */
+public class MapSqlImportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int villages = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        SyntheticWorld.create(0, 0, 1L);
+        File mapSql = generate(villages, 0);
+        File nextDay = generate(villages, 1);
+        System.out.println("Generated map.sql with " + villages + " villages");
+
+        // Previous approach: one autocommitted statement per line
+        long start = System.nanoTime();
+        Database.execute("DELETE FROM x_world");
+        try (BufferedReader br = new BufferedReader(new FileReader(mapSql))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.endsWith(";")) Database.execute(line);
+            }
+        }
+        report("Line by line", villages, System.nanoTime() - start);
+
+        // Warm up
+        importFile(nextDay);
+        Database.execute("DELETE FROM x_world");
+
+        start = System.nanoTime();
+        WorldDiff diff = importFile(mapSql);
+        report("Parsed and batched", diff.getRows(), System.nanoTime() - start);
+
+        start = System.nanoTime();
+        diff = importFile(nextDay);
+        report("Next day, differential", diff.getRows(), System.nanoTime() - start);
+        System.out.println("Next day changes: " + diff);
+
+        ResultSet rs = Database.query("SELECT count(*) FROM x_world");
+        System.out.println("x_world rows after import: " + rs.getInt(1));
+    }
+
+
+    private static WorldDiff importFile(File file) throws Exception {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            return MapSqlImporter.importMapSql(br);
+        }
+    }
+
+
+    private static void report(String label, int rows, long nanos) {
+        long ms = Math.max(1, nanos / 1_000_000);
+        System.out.println(label + ": " + ms + " ms, " + rows * 1000L / ms + " rows/s");
+    }
+
+
+    /**
+     * Writes a map.sql in the format served by Travian servers.
+     * Each day a few villages disappear, a few are founded and some grow.
+     * @param day 0 for the first map, 1 for the next day
+     */
+    private static File generate(int villages, int day) throws IOException {
+        File file = File.createTempFile("planner-bench", ".sql");
+        file.deleteOnExit();
+        Random random = new Random(1L);
+        int width = 2 * SyntheticWorld.SERVER_SIZE + 1;
+        int founded = day * villages / 200;
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < villages + founded; i++) {
+                int playerId = random.nextInt(Math.max(1, villages / 8)) + 1;
+                int population = random.nextInt(1000) + 1;
+                if (day > 0 && i % 500 == 0) continue;
+                if (day > 0 && i % 10 == 0) population += 5;
+                // Walk the map in a scattered order so that every coordinate is used at most once
+                int cell = (int) ((i * 7919L) % ((long) width * width));
+                int x = cell % width - SyntheticWorld.SERVER_SIZE;
+                int y = cell / width - SyntheticWorld.SERVER_SIZE;
+                int allyId = playerId % 200;
+                out.println("INSERT INTO `x_world` VALUES (" + SyntheticWorld.coordId(x, y) + "," + x + "," + y
+                        + "," + (playerId % 3 + 1) + "," + (i + 1) + ",'Player''s village " + i + "',"
+                        + playerId + ",'Player" + playerId + "'," + allyId + ",'" + (allyId == 0 ? "" : "Ally" + allyId)
+                        + "'," + population + ",NULL," + (i % 8 == 0 ? "TRUE" : "FALSE")
+                        + ",NULL,NULL,NULL);");
+            }
+        }
+        return file;
+    }
+}
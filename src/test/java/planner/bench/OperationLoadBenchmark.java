@@ -0,0 +1,90 @@
+package planner.bench;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+
+/**
+ * Measures how long it takes to build a new operation on a large synthetic world.
+ * Compares the row-based world hydration with one x_world lookup per village,
+ * and reports the heap held by the operation.
+ * Then saves a plan and reports the time per phase of loading it, with the whole world and lazily.
+ * Usage: OperationLoadBenchmark [villages] [participants] [attacks per participant]
+ */
+public class OperationLoadBenchmark {
+
+    private static final int LOOKUP_SAMPLE = 1000;
+
+
+    public static void main(String[] args) throws Exception {
+
+        int villages = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int participants = args.length > 1 ? Integer.parseInt(args[1]) : 150;
+        int attacksPerParticipant = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        SyntheticWorld.create(villages, participants, 1L);
+        System.out.println("World: " + villages + " villages, " + participants + " participants");
+
+        // Warm up
+        new Operation();
+
+        long start = System.nanoTime();
+        Operation operation = new Operation();
+        long bulkMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("New operation, villages hydrated from the joined rows: " + bulkMs + " ms");
+        System.out.println("Attacks in memory: " + operation.getAttacks().size()
+                + ", heap after GC: " + usedHeapMb() + " MB");
+
+        // Previous approach: one query per village
+        int sample = Math.min(LOOKUP_SAMPLE, operation.getTargets().size());
+        start = System.nanoTime();
+        for (int i = 0; i < sample; i++) {
+            new TargetVillage(operation.getTargets().get(i).getCoordId());
+        }
+        long lookupNanos = System.nanoTime() - start;
+        long extrapolatedMs = lookupNanos / sample * operation.getTargets().size() / 1_000_000;
+        System.out.println("One lookup per village: " + lookupNanos / sample / 1000 + " us per village, "
+                + "~" + extrapolatedMs + " ms for the whole world");
+        System.out.println("Speedup on world hydration: ~" + Math.max(1, extrapolatedMs / Math.max(1, bulkMs)) + "x");
+
+        // Save a plan and load it back
+        Random random = new Random(1L);
+        List<TargetVillage> targets = operation.getTargets();
+        for (AttackerVillage attacker : operation.getAttackers()) {
+            for (int i = 0; i < attacksPerParticipant; i++) {
+                Attack attack = operation.getAttacks().getOrCreate(attacker, targets.get(random.nextInt(targets.size())));
+                if (attack.getWaves() == 0) attacker.getPlannedAttacks().add(attack);
+                attack.setWaves(4);
+            }
+        }
+        operation.setRandomShiftWindow(600);
+        operation.computeLandingTimes(true);
+        operation.save();
+        Operation.load();
+        start = System.nanoTime();
+        Operation loaded = Operation.load();
+        System.out.println("Load with " + loaded.getAttacks().size() + " saved attacks: "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, per phase " + loaded.getLoadTimings());
+
+        // Only the participants and planned targets, then one alliance on demand
+        start = System.nanoTime();
+        Operation lazy = Operation.load(true);
+        System.out.println("Lazy load: " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+                + lazy.getTargets().size() + " targets, per phase " + lazy.getLoadTimings());
+        start = System.nanoTime();
+        int allianceVillages = lazy.loadAlliances(Collections.singleton("Ally7")).size();
+        System.out.println("Loading an alliance of " + allianceVillages + " villages: "
+                + (System.nanoTime() - start) / 1000 + " us");
+    }
+
+
+    private static long usedHeapMb() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+    }
+}
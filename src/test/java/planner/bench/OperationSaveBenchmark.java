@@ -0,0 +1,54 @@
+package planner.bench;
+
+import java.util.List;
+import java.util.Random;
+
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+
+/**
+ * Measures saving a plan: the first full save, and saves after small edits.
+ * Usage: OperationSaveBenchmark [villages] [participants] [attacks]
+ */
+public class OperationSaveBenchmark {
+
+    private static final int ROUNDS = 20;
+
+
+    public static void main(String[] args) throws Exception {
+
+        int villages = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        int participants = args.length > 1 ? Integer.parseInt(args[1]) : 150;
+        int attackCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        SyntheticWorld.create(villages, participants, 1L);
+        Operation operation = new Operation();
+        Random random = new Random(1L);
+        List<TargetVillage> targets = operation.getTargets();
+        List<AttackerVillage> attackers = operation.getAttackers();
+        while (operation.getAttacks().size() < attackCount) {
+            AttackerVillage attacker = attackers.get(random.nextInt(attackers.size()));
+            Attack attack = operation.getAttacks().getOrCreate(attacker, targets.get(random.nextInt(targets.size())));
+            if (attack.getWaves() == 0) attacker.getPlannedAttacks().add(attack);
+            attack.setWaves(4);
+        }
+        System.out.println("World: " + villages + " villages, " + participants + " participants, "
+                + attackCount + " planned attacks");
+
+        long start = System.nanoTime();
+        operation.save();
+        System.out.println("First save: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        List<Attack> planned = operation.getAttacks().values();
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            // A typical edit: one attack moved by a second, one target shifted
+            Attack attack = planned.get(random.nextInt(planned.size()));
+            attack.setLandingTimeShift(attack.getLandingTimeShift() + 1);
+            attack.getTarget().setRandomShiftSeconds(attack.getTarget().getRandomShiftSeconds() + 1);
+            operation.save();
+        }
+        System.out.println("Save after an edit: " + (System.nanoTime() - start) / 1000 / ROUNDS + " us");
+    }
+}
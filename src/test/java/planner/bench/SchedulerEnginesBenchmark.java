@@ -0,0 +1,63 @@
+package planner.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import planner.entities.Operation;
+import planner.util.AnnealingScheduler;
+import planner.util.GeneticScheduler;
+import planner.util.Scheduler;
+import planner.util.TabuScheduler;
+
+/**
+ * Compares the scheduler engines on the same synthetic plan: first a full run of each,
+ * then the time each takes to reach a given fitness, by default 99.5 % of the lowest of the full runs.
+ * Usage: SchedulerEnginesBenchmark [participants] [targets] [attacks] [flex window seconds] [target fitness]
+ */
+public class SchedulerEnginesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int participants = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        int targets = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int attacks = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 600;
+        SyntheticWorld.create(10000, participants, 1L);
+        Operation operation = new Operation();
+        SyntheticWorld.planAttacks(operation, targets, attacks, 1L);
+        operation.setRandomShiftWindow(window);
+
+        Map<String, Scheduler.Factory> engines = new LinkedHashMap<>();
+        engines.put("Genetic", GeneticScheduler::new);
+        engines.put("Annealing", AnnealingScheduler::new);
+        engines.put("Tabu", TabuScheduler::new);
+
+        Map<String, String> results = new LinkedHashMap<>();
+        double lowest = Double.MAX_VALUE;
+        for (Map.Entry<String, Scheduler.Factory> engine : engines.entrySet()) {
+            Scheduler scheduler = engine.getValue().create(operation, 240.0, 0.8);
+            long start = System.nanoTime();
+            Map<Integer, Long> solution = scheduler.schedule();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            double fitness = solution == null ? 0 : scheduler.fitness(solution);
+            lowest = Math.min(lowest, fitness);
+            results.put(engine.getKey() + ", full run", millis + " ms, fitness " + Math.round(fitness));
+        }
+
+        double target = args.length > 4 ? Double.parseDouble(args[4]) : 0.995 * lowest;
+        for (Map.Entry<String, Scheduler.Factory> engine : engines.entrySet()) {
+            Scheduler scheduler = engine.getValue().create(operation, 240.0, 0.8);
+            scheduler.setTargetFitness(target);
+            long start = System.nanoTime();
+            Map<Integer, Long> solution = scheduler.schedule();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            double fitness = solution == null ? 0 : scheduler.fitness(solution);
+            results.put(engine.getKey() + ", to fitness " + Math.round(target),
+                    millis + " ms" + (fitness >= target ? "" : ", not reached (" + Math.round(fitness) + ")"));
+        }
+
+        System.out.println(participants + " participants, " + targets + " targets, "
+                + attacks + " attacks, flex window " + window + " s");
+        results.forEach((name, result) -> System.out.println(name + ": " + result));
+    }
+}
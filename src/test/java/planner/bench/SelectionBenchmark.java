@@ -0,0 +1,77 @@
+package planner.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import planner.util.AliasTable;
+
+/**
+ * Measures parent selection over one generation's fitness values: roulette by binary search over
+ * cumulative weights (what the scheduler did with EnumeratedDistribution, without boxing),
+ * roulette from an alias table and tournament selection. Each round builds what is needed
+ * and draws one parent per chromosome.
+ * Usage: SelectionBenchmark [population] [tournament size]
+ */
+public class SelectionBenchmark {
+
+    private static final int ROUNDS = 20;
+
+
+    public static void main(String[] args) {
+
+        int population = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int tournamentSize = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        // About half of the chromosomes of a generation have zero fitness
+        Random random = new Random(1L);
+        double[] fitnessValues = new double[population];
+        for (int i = 0; i < population; i++) {
+            fitnessValues[i] = random.nextBoolean() ? 0 : random.nextDouble() * 10000;
+        }
+        double[] weights = new double[population];
+        double[] cumulative = new double[population];
+        AliasTable aliasTable = new AliasTable();
+
+        long cumulativeNanos = 0;
+        long aliasNanos = 0;
+        long tournamentNanos = 0;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean measured = round >= ROUNDS / 2;
+            long start = System.nanoTime();
+            double total = 0;
+            for (int i = 0; i < population; i++) {
+                total += fitnessValues[i];
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < population; i++) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                checksum += index < 0 ? -index - 1 : index;
+            }
+            if (measured) cumulativeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            System.arraycopy(fitnessValues, 0, weights, 0, population);
+            aliasTable.build(weights, population);
+            for (int i = 0; i < population; i++) {
+                checksum += aliasTable.sample(random);
+            }
+            if (measured) aliasNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < population; i++) {
+                int best = random.nextInt(population);
+                for (int j = 1; j < tournamentSize; j++) {
+                    int contestant = random.nextInt(population);
+                    if (fitnessValues[contestant] > fitnessValues[best]) best = contestant;
+                }
+                checksum += best;
+            }
+            if (measured) tournamentNanos += System.nanoTime() - start;
+        }
+        int rounds = ROUNDS - ROUNDS / 2;
+        System.out.println(population + " chromosomes (checksum " + checksum + ")");
+        System.out.println("Roulette, cumulative weights: " + cumulativeNanos / rounds / 1000 + " us per generation");
+        System.out.println("Roulette, alias table: " + aliasNanos / rounds / 1000 + " us per generation");
+        System.out.println("Tournament of " + tournamentSize + ": " + tournamentNanos / rounds / 1000 + " us per generation");
+    }
+}
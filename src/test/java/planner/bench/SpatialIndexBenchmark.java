@@ -0,0 +1,94 @@
+package planner.bench;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.SpatialIndex;
+import planner.entities.TargetVillage;
+
+/**
+ * Measures neighbourhood queries with the spatial index against a linear scan over the targets:
+ * villages within a radius of each participant, and the closest villages of an alliance.
+ * Usage: SpatialIndexBenchmark [villages] [radius] [k]
+ */
+public class SpatialIndexBenchmark {
+
+    private static final int ROUNDS = 20;
+
+
+    public static void main(String[] args) throws Exception {
+
+        int villages = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        double radius = args.length > 1 ? Double.parseDouble(args[1]) : 25;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        SyntheticWorld.create(villages, 150, 1L);
+        Operation operation = new Operation();
+        List<TargetVillage> targets = operation.getTargets();
+        List<AttackerVillage> attackers = operation.getAttackers();
+        SpatialIndex<TargetVillage> index = new SpatialIndex<>(SyntheticWorld.SERVER_SIZE);
+        long start = System.nanoTime();
+        targets.forEach(index::add);
+        System.out.println(targets.size() + " targets indexed in " + (System.nanoTime() - start) / 1000 + " us");
+
+        long scanNanos = 0;
+        long indexNanos = 0;
+        long scanFound = 0;
+        long indexFound = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean measured = round >= ROUNDS / 2;
+            start = System.nanoTime();
+            for (AttackerVillage attacker : attackers) {
+                for (TargetVillage target : targets) {
+                    if (index.distance(attacker.getXCoord(), attacker.getYCoord(), target) <= radius) scanFound++;
+                }
+            }
+            if (measured) scanNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (AttackerVillage attacker : attackers) {
+                indexFound += index.within(attacker.getXCoord(), attacker.getYCoord(), radius).size();
+            }
+            if (measured) indexNanos += System.nanoTime() - start;
+        }
+        int queries = (ROUNDS - ROUNDS / 2) * attackers.size();
+        System.out.println("Within " + radius + " squares, linear scan: " + scanNanos / queries / 1000 + " us per query");
+        System.out.println("Within " + radius + " squares, spatial index: " + indexNanos / queries / 1000
+                + " us per query, same results: " + (scanFound == indexFound));
+
+        String alliance = "Ally7";
+        scanNanos = 0;
+        indexNanos = 0;
+        double scanDistances = 0;
+        double indexDistances = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean measured = round >= ROUNDS / 2;
+            start = System.nanoTime();
+            for (AttackerVillage attacker : attackers) {
+                List<TargetVillage> candidates = new ArrayList<>();
+                for (TargetVillage target : targets) {
+                    if (alliance.equals(target.getAllyName())) candidates.add(target);
+                }
+                candidates.sort(Comparator.comparingDouble(
+                        target -> index.distance(attacker.getXCoord(), attacker.getYCoord(), target)));
+                for (TargetVillage target : candidates.subList(0, Math.min(k, candidates.size()))) {
+                    scanDistances += index.distance(attacker.getXCoord(), attacker.getYCoord(), target);
+                }
+            }
+            if (measured) scanNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (AttackerVillage attacker : attackers) {
+                List<TargetVillage> nearest = index.nearest(attacker.getXCoord(), attacker.getYCoord(), k,
+                        target -> alliance.equals(target.getAllyName()));
+                for (TargetVillage target : nearest) {
+                    indexDistances += index.distance(attacker.getXCoord(), attacker.getYCoord(), target);
+                }
+            }
+            if (measured) indexNanos += System.nanoTime() - start;
+        }
+        System.out.println("Closest " + k + " of " + alliance + ", linear scan: " + scanNanos / queries / 1000 + " us per query");
+        System.out.println("Closest " + k + " of " + alliance + ", spatial index: " + indexNanos / queries / 1000
+                + " us per query, same results: " + (Math.abs(scanDistances - indexDistances) < 0.001));
+    }
+}
@@ -0,0 +1,151 @@
+package planner.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import planner.App;
+import planner.Database;
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+
+/**
+ * Builds throwaway databases with a randomly populated world for the benchmarks.
+ */
+public class SyntheticWorld {
+
+    public static final int SERVER_SIZE = 200;
+
+    public static final String OWN_ALLIANCE = "Us";
+
+
+    /**
+     * Creates a new temporary database, points App.DB to it and fills it with a random world.
+     * Participants are placed in villages of the alliance OWN_ALLIANCE.
+     * @param villages amount of villages in x_world
+     * @param participants amount of rows in participants
+     * @param seed random seed, the same seed gives the same world
+     * @return JDBC url of the database
+     */
+    public static String create(int villages, int participants, long seed) throws IOException, SQLException {
+
+        File dbFile = File.createTempFile("planner-bench", ".db");
+        dbFile.deleteOnExit();
+        App.DB = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        Database.createTables();
+
+        Random random = new Random(seed);
+        int width = 2 * SERVER_SIZE + 1;
+        Set<Integer> used = new HashSet<>();
+
+        Connection conn = Database.getConnection();
+        conn.setAutoCommit(false);
+        conn.prepareStatement("INSERT INTO world_meta VALUES (" + SERVER_SIZE + ", 1, 'localhost')").execute();
+        PreparedStatement village = conn.prepareStatement(
+                "INSERT INTO x_world VALUES (?,?,?,?,?,?,?,?,?,?,?,NULL,'FALSE',NULL,NULL,NULL)");
+        PreparedStatement participant = conn.prepareStatement(
+                "INSERT INTO participants VALUES (null,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+        PreparedStatement villageData = conn.prepareStatement(
+                "INSERT INTO village_data (coordId, capital, offvillage) VALUES (?,?,?)");
+        int participantsAdded = 0;
+        for (int i = 0; i < villages; i++) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(width) - SERVER_SIZE;
+                y = random.nextInt(width) - SERVER_SIZE;
+            } while (!used.add(coordId(x, y)));
+            int playerId = random.nextInt(Math.max(1, villages / 8)) + 1;
+            // Every 20th player is one of us, the rest are spread over 200 alliances
+            int allyId = playerId % 20 == 0 ? 1 : playerId % 200 + 2;
+            String allyName = allyId == 1 ? OWN_ALLIANCE : "Ally" + allyId;
+            int tribe = playerId % 3 + 1;
+            village.setInt(1, coordId(x, y));
+            village.setInt(2, x);
+            village.setInt(3, y);
+            village.setInt(4, tribe);
+            village.setInt(5, i + 1);
+            village.setString(6, "Village " + i);
+            village.setInt(7, playerId);
+            village.setString(8, "Player" + playerId);
+            village.setInt(9, allyId);
+            village.setString(10, allyName);
+            village.setInt(11, random.nextInt(1000) + 1);
+            village.addBatch();
+            if (i % 10 == 0) {
+                villageData.setInt(1, coordId(x, y));
+                villageData.setInt(2, i % 20 == 0 ? 1 : 0);
+                villageData.setInt(3, i % 20 == 0 ? 0 : 1);
+                villageData.addBatch();
+            }
+            if (allyId == 1 && participantsAdded < participants) {
+                participant.setString(1, "Player" + playerId);
+                participant.setInt(2, x);
+                participant.setInt(3, y);
+                participant.setInt(4, random.nextInt(21));
+                participant.setDouble(5, 1.0);
+                participant.setInt(6, 2);
+                participant.setString(7, "10000+2000+3000+0+0+0");
+                participant.setInt(8, 25000);
+                participant.setInt(9, 1000);
+                participant.setInt(10, 0);
+                participant.setString(11, "00:00:00");
+                participant.setString(12, "00:00:00");
+                participant.setString(13, "");
+                participant.addBatch();
+                participantsAdded++;
+            }
+        }
+        village.executeBatch();
+        villageData.executeBatch();
+        participant.executeBatch();
+        conn.commit();
+        conn.setAutoCommit(true);
+        village.close();
+        participant.close();
+        villageData.close();
+        return App.DB;
+    }
+
+
+    /**
+     * Plans random attacks from the participants of the operation on a set of targets.
+     * @param operation operation on a synthetic world
+     * @param targets amount of targets to attack
+     * @param attacks amount of attacks to plan
+     * @param seed random seed, the same seed gives the same plan
+     */
+    public static void planAttacks(Operation operation, int targets, int attacks, long seed) {
+        Random random = new Random(seed);
+        List<TargetVillage> allTargets = operation.getTargets();
+        List<TargetVillage> chosen = new ArrayList<>();
+        while (chosen.size() < targets) {
+            TargetVillage target = allTargets.get(random.nextInt(allTargets.size()));
+            if (!chosen.contains(target)) chosen.add(target);
+        }
+        List<AttackerVillage> attackers = operation.getAttackers();
+        while (operation.getAttacks().size() < attacks) {
+            AttackerVillage attacker = attackers.get(random.nextInt(attackers.size()));
+            Attack attack = operation.getAttacks().getOrCreate(attacker, chosen.get(random.nextInt(chosen.size())));
+            if (attack.getWaves() == 0) attacker.getPlannedAttacks().add(attack);
+            attack.setWaves(random.nextInt(8) + 1);
+        }
+    }
+
+
+    /**
+     * Travian T4 coordinate id on a map of SERVER_SIZE.
+     */
+    public static int coordId(int x, int y) {
+        return (SERVER_SIZE - y) * (2 * SERVER_SIZE + 1) + (x + SERVER_SIZE) + 1;
+    }
+}
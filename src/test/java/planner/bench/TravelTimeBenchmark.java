@@ -0,0 +1,75 @@
+package planner.bench;
+
+import java.util.List;
+
+import planner.entities.Attack;
+import planner.entities.AttackerVillage;
+import planner.entities.Operation;
+import planner.entities.TargetVillage;
+import planner.util.TravelTimeKernel;
+
+/**
+ * Measures travel times from one attacker to every target at several unit speeds,
+ * building an Attack per target versus the batch kernel on coordinate arrays.
+ * Usage: TravelTimeBenchmark [villages] [rounds]
+ */
+public class TravelTimeBenchmark {
+
+    private static final int[] UNIT_SPEEDS = {3, 4, 5, 19};
+
+
+    public static void main(String[] args) throws Exception {
+
+        int villages = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        SyntheticWorld.create(villages, 10, 1L);
+        Operation operation = new Operation();
+        AttackerVillage attacker = operation.getAttackers().get(0);
+        List<TargetVillage> targets = operation.getTargets();
+        int count = targets.size();
+        System.out.println("From one attacker to " + count + " targets at " + UNIT_SPEEDS.length + " unit speeds");
+
+        int[] tx = new int[count];
+        int[] ty = new int[count];
+        for (int i = 0; i < count; i++) {
+            tx[i] = targets.get(i).getXCoord();
+            ty[i] = targets.get(i).getYCoord();
+        }
+        Attack sample = operation.previewAttack(attacker, targets.get(0));
+        double factor = TravelTimeKernel.tsFactor(attacker.getTs().get(), 0);
+        long[][] out = new long[UNIT_SPEEDS.length][count];
+
+        long objectSum = 0;
+        long batchSum = 0;
+        long objectNanos = 0;
+        long batchNanos = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int s = 0; s < UNIT_SPEEDS.length; s++) {
+                for (TargetVillage target : targets) {
+                    Attack attack = operation.previewAttack(attacker, target);
+                    attack.setUnitSpeed(UNIT_SPEEDS[s]);
+                    objectSum += attack.travelSeconds();
+                }
+            }
+            // First half of the rounds warms up the JIT
+            if (round >= rounds / 2) objectNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TravelTimeKernel.travelSeconds(attacker.getXCoord(), attacker.getYCoord(), tx, ty, count,
+                    sample.getServerSize(), sample.getServerSpeed(), attacker.getArteSpeed(),
+                    UNIT_SPEEDS, factor, out);
+            if (round >= rounds / 2) batchNanos += System.nanoTime() - start;
+            for (long[] speedRow : out) {
+                for (long seconds : speedRow) batchSum += seconds;
+            }
+        }
+        int measured = rounds - rounds / 2;
+        long calculations = (long) measured * count * UNIT_SPEEDS.length;
+        System.out.println("Attack per target: " + objectNanos / calculations + " ns per travel time, "
+                + objectNanos / measured / 1000 + " us per pass");
+        System.out.println("Batch kernel: " + batchNanos / calculations + " ns per travel time, "
+                + batchNanos / measured / 1000 + " us per pass");
+        System.out.println("Speedup: ~" + objectNanos / Math.max(1, batchNanos) + "x, same results: " + (objectSum == batchSum));
+    }
+}